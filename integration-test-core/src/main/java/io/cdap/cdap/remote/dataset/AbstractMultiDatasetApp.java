@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import io.cdap.cdap.api.app.AbstractApplication;
+import io.cdap.cdap.api.service.AbstractService;
+import io.cdap.cdap.api.service.http.HttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+
+/**
+ * Abstract base class for Applications with a Service to interact with any number of Datasets of one type. Unlike
+ * {@link AbstractDatasetApp}, the application does not create any dataset, and one instance of it serves all datasets
+ * of its namespace. The handler of the service is mapped under {@link #DATASET_PATH}, so that the dataset of a request
+ * is named by its path, as returned by {@link #getDatasetName(HttpServiceRequest)}.
+ */
+public abstract class AbstractMultiDatasetApp extends AbstractApplication {
+
+  /**
+   * Path under which the handler of the service must be mapped. The name of the parameter differs from the ones of
+   * the endpoints of the handlers, which may name another dataset in their own path.
+   */
+  public static final String DATASET_PATH = "datasets/{servedDataset}";
+
+  private static final String DATASET_SEGMENT = "datasets/";
+
+  /**
+   * @return An HttpServiceHandler which is mapped under {@link #DATASET_PATH}, and which is responsible for serving
+   *         the Dataset named by the path of each request.
+   */
+  protected abstract HttpServiceHandler getMultiDatasetHttpHandler();
+
+  @Override
+  public void configure() {
+    addService(new MultiDatasetService());
+  }
+
+  /**
+   * @return the path relative to the URL of the service, under which the given dataset is served
+   */
+  public static String getDatasetPath(String datasetName) {
+    return DATASET_SEGMENT + datasetName + "/";
+  }
+
+  /**
+   * @return the name of the dataset that a request to the service operates on
+   */
+  public static String getDatasetName(HttpServiceRequest request) {
+    String uri = request.getRequestURI();
+    // the method of the service may be preceded by the path of the service itself
+    int methods = uri.indexOf("/methods/");
+    int start = uri.indexOf(DATASET_SEGMENT, methods < 0 ? 0 : methods);
+    if (start < 0) {
+      throw new IllegalArgumentException("Request to " + uri + " does not name a dataset.");
+    }
+    start += DATASET_SEGMENT.length();
+    int end = start;
+    while (end < uri.length() && uri.charAt(end) != '/' && uri.charAt(end) != '?') {
+      end++;
+    }
+    return uri.substring(start, end);
+  }
+
+  /**
+   * Multi-dataset service.
+   */
+  public class MultiDatasetService extends AbstractService {
+
+    @Override
+    protected void configure() {
+      addHandler(getMultiDatasetHttpHandler());
+    }
+  }
+}
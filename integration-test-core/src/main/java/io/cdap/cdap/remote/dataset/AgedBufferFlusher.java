@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the buffer of a remote dataset client once its oldest entry reaches the maximum age, even if no further
+ * operation is made on the client. The client calls {@link #bufferStarted()} whenever an empty buffer receives its
+ * first entry and {@link #bufferFlushed()} whenever the buffer is sent, both while holding its lock. The flush runs
+ * on a background thread shared by all clients, holding the same lock. If it fails, the error is logged and the
+ * entries stay buffered, so that the next operation of the client sends them again and throws the error.
+ */
+public final class AgedBufferFlusher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AgedBufferFlusher.class);
+  private static final ScheduledThreadPoolExecutor FLUSHER = createFlusher();
+
+  private final Object lock;
+  private final String name;
+  private final long maxAgeMillis;
+  private final Runnable flush;
+  // the flush scheduled for the maximum age of the current buffer, or null if the buffer is empty
+  private ScheduledFuture<?> scheduledFlush;
+  // incremented whenever the buffer starts or is sent, so that a flush scheduled for an earlier buffer does nothing
+  private long generation;
+
+  /**
+   * @param lock the lock guarding the buffer of the client
+   * @param name the name of the client, used in log messages
+   * @param maxAgeMillis the maximum age of the oldest buffered entry. A value of 0 or less disables the flush.
+   * @param flush sends the buffer of the client
+   */
+  public AgedBufferFlusher(Object lock, String name, long maxAgeMillis, Runnable flush) {
+    this.lock = lock;
+    this.name = name;
+    this.maxAgeMillis = maxAgeMillis;
+    this.flush = flush;
+  }
+
+  /**
+   * Schedules the flush of a buffer which just received its first entry. Must be called while holding the lock.
+   */
+  public void bufferStarted() {
+    bufferFlushed();
+    if (maxAgeMillis <= 0) {
+      return;
+    }
+    long current = generation;
+    scheduledFlush = FLUSHER.schedule(() -> flushAged(current), maxAgeMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Cancels the scheduled flush, since the buffer was sent. Must be called while holding the lock.
+   */
+  public void bufferFlushed() {
+    generation++;
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+  }
+
+  private void flushAged(long scheduledGeneration) {
+    synchronized (lock) {
+      if (scheduledGeneration != generation) {
+        return;
+      }
+      try {
+        flush.run();
+      } catch (RuntimeException e) {
+        LOG.warn("Failed to flush the entries buffered for more than {} ms by {}.", maxAgeMillis, name, e);
+      }
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor createFlusher() {
+    ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(
+      1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("remote-dataset-flusher-%d").build());
+    // flushes are cancelled whenever a buffer is sent before its maximum age, so do not keep them queued
+    flusher.setRemoveOnCancelPolicy(true);
+    return flusher;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * One page of a paged read from a dataset service.
+ *
+ * @param <T> type of the items in the page
+ */
+public final class Page<T> {
+  private final List<T> items;
+  @Nullable
+  private final byte[] resumeToken;
+
+  public Page(List<T> items, @Nullable byte[] resumeToken) {
+    this.items = items;
+    this.resumeToken = resumeToken;
+  }
+
+  public List<T> getItems() {
+    return items;
+  }
+
+  /**
+   * @return the token to pass in the request for the next page, or {@code null} if this is the last page
+   */
+  @Nullable
+  public byte[] getResumeToken() {
+    return resumeToken;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link Iterator} over the items of a paged read from a dataset service. As soon as a page is received, the
+ * request for the following page is issued in the background, so that it is fetched while the caller consumes the
+ * current one. At most two pages are held in memory at any time, however many items there are. Closing the iterator
+ * cancels the request for the following page, if it is still pending.
+ *
+ * @param <T> type of the items
+ */
+public abstract class PrefetchingPageIterator<T> extends AbstractIterator<T> implements CloseableIterator<T> {
+
+  private Iterator<T> currentPage = Collections.emptyIterator();
+  private CompletableFuture<Page<T>> nextPage;
+  private boolean started;
+
+  /**
+   * Requests a page from the dataset service, without waiting for the response.
+   *
+   * @param resumeToken the resume token returned with the previous page, or {@code null} for the first page
+   */
+  protected abstract CompletableFuture<Page<T>> fetchPage(@Nullable byte[] resumeToken);
+
+  @Override
+  protected T computeNext() {
+    if (!started) {
+      started = true;
+      nextPage = fetchPage(null);
+    }
+    while (!currentPage.hasNext()) {
+      if (nextPage == null) {
+        return endOfData();
+      }
+      Page<T> page = RemoteDatasetClient.getUnchecked(nextPage);
+      nextPage = page.getResumeToken() == null ? null : fetchPage(page.getResumeToken());
+      currentPage = page.getItems().iterator();
+    }
+    return currentPage.next();
+  }
+
+  @Override
+  public void close() {
+    if (nextPage != null) {
+      nextPage.cancel(true);
+      nextPage = null;
+    }
+    started = true;
+    currentPage = Collections.emptyIterator();
+  }
+}
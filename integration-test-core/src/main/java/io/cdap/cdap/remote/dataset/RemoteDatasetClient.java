@@ -0,0 +1,266 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.cdap.client.config.ClientConfig;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.remote.dataset.codec.BinaryCodec;
+import io.cdap.cdap.remote.dataset.codec.Codec;
+import io.cdap.cdap.remote.dataset.codec.Compression;
+import io.cdap.cdap.remote.dataset.codec.HandlerCodec;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
+import io.cdap.cdap.security.authentication.client.AccessToken;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
+
+/**
+ * Asynchronous client for the HttpHandler of a dataset service, shared by the remote dataset implementations.
+ *
+ * Requests are executed on a shared pool of threads, and each client allows at most
+ * {@code remote.dataset.max.inflight} of its requests to be in flight at the same time. Submitting a request beyond
+ * that limit blocks the caller until one of the requests in flight completes. Requests go through
+ * {@link java.net.HttpURLConnection}, which keeps connections alive and reuses them for subsequent requests, up to
+ * the {@code http.maxConnections} system property per destination.
+ *
+ * Request bodies are encoded with the {@link BinaryCodec}, if one is given, it supports the type of the body, and the
+ * system property {@code remote.dataset.codec} is not set to {@code json}. Otherwise they are encoded as JSON.
+ * Responses are decoded according to the Content-Type the service answered with.
+ *
+ * Compression is off by default. If the system property {@code remote.dataset.compression} is set to {@code gzip} or
+ * {@code snappy}, request bodies of at least {@code remote.dataset.compression.threshold} bytes are compressed, and
+ * the service is asked to compress response bodies above the same threshold. Responses are decompressed according
+ * to the Content-Encoding the service answered with.
+ */
+public final class RemoteDatasetClient {
+  // the codec to use for requests: either "binary" (default) or "json"
+  public static final String CODEC = "remote.dataset.codec";
+  // maximum number of requests of one client which are in flight at the same time
+  public static final String MAX_IN_FLIGHT = "remote.dataset.max.inflight";
+  // the compression of request and response bodies: "none" (default), "gzip" or "snappy"
+  public static final String COMPRESSION = "remote.dataset.compression";
+  // size in bytes from which bodies are compressed
+  public static final String COMPRESSION_THRESHOLD = "remote.dataset.compression.threshold";
+
+  private static final String AUTHORIZATION_HEADER = "Authorization";
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("remote-dataset-client-%d").build());
+
+  private final URL serviceURL;
+  private final RESTClient restClient;
+  private final ClientConfig clientConfig;
+  private final JsonCodec jsonCodec;
+  @Nullable
+  private final BinaryCodec binaryCodec;
+  private final Semaphore inFlight;
+  private final Compression compression;
+  private final int compressionThreshold;
+
+  public RemoteDatasetClient(URL serviceURL, RESTClient restClient, ClientConfig clientConfig,
+                             JsonCodec jsonCodec, @Nullable BinaryCodec binaryCodec) {
+    this(serviceURL, restClient, clientConfig, jsonCodec, binaryCodec,
+         Integer.parseInt(System.getProperty(MAX_IN_FLIGHT, "64")));
+  }
+
+  public RemoteDatasetClient(URL serviceURL, RESTClient restClient, ClientConfig clientConfig,
+                             JsonCodec jsonCodec, @Nullable BinaryCodec binaryCodec, int maxInFlight) {
+    this(serviceURL, restClient, clientConfig, jsonCodec, binaryCodec, maxInFlight,
+         Compression.valueOf(System.getProperty(COMPRESSION, "none").toUpperCase()),
+         Integer.parseInt(System.getProperty(COMPRESSION_THRESHOLD, String.valueOf(Compression.DEFAULT_THRESHOLD))));
+  }
+
+  public RemoteDatasetClient(URL serviceURL, RESTClient restClient, ClientConfig clientConfig,
+                             JsonCodec jsonCodec, @Nullable BinaryCodec binaryCodec, int maxInFlight,
+                             Compression compression, int compressionThreshold) {
+    this.serviceURL = serviceURL;
+    this.restClient = restClient;
+    this.clientConfig = clientConfig;
+    this.jsonCodec = jsonCodec;
+    this.binaryCodec = "json".equals(System.getProperty(CODEC, "binary")) ? null : binaryCodec;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.compression = compression;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  /**
+   * Posts the given body to the given method of the service, and decodes the response.
+   */
+  public <T> CompletableFuture<T> executeAsync(String method, Object body, Type bodyType, final Type responseType) {
+    return submit(method, body, bodyType).thenApply(response -> {
+      try {
+        Compression responseCompression = Compression.fromEncoding(
+          getHeader(response, Compression.CONTENT_ENCODING_HEADER));
+        return getCodec(response).decode(responseCompression.decompress(response.getResponseBody()), responseType);
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+    });
+  }
+
+  /**
+   * Posts the given body to the given method of the service, ignoring the response body.
+   */
+  public CompletableFuture<Void> executeAsync(String method, Object body, Type bodyType) {
+    return submit(method, body, bodyType).thenApply(response -> null);
+  }
+
+  /**
+   * Posts the given body to the given method of the service as JSON, and returns the body of the response as it is
+   * received, for methods that stream their response. The request is counted as in flight until the stream is
+   * closed. Neither body is compressed.
+   *
+   * The request goes through {@link HttpURLConnection} directly rather than the {@link RESTClient}, which reads the
+   * whole response before returning it, so an HTTPS service must be trusted by the default trust store of the JVM.
+   *
+   * @throws IOException if the request fails, or the service responds with another status than 200
+   */
+  public InputStream openStream(String method, Object body, Type bodyType) throws IOException {
+    byte[] encoded = jsonCodec.encode(body, bodyType);
+    inFlight.acquireUninterruptibly();
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(serviceURL, method).openConnection();
+      connection.setRequestMethod("POST");
+      connection.setConnectTimeout(clientConfig.getDefaultConnectTimeout());
+      connection.setReadTimeout(clientConfig.getDefaultReadTimeout());
+      connection.setRequestProperty(HandlerCodec.CONTENT_TYPE_HEADER, jsonCodec.getContentType());
+      AccessToken accessToken = clientConfig.getAccessToken();
+      if (accessToken != null) {
+        connection.setRequestProperty(AUTHORIZATION_HEADER, accessToken.getTokenType() + " " + accessToken.getValue());
+      }
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(encoded.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(encoded);
+      }
+      int status = connection.getResponseCode();
+      if (status != HttpURLConnection.HTTP_OK) {
+        String message = connection.getResponseMessage();
+        connection.disconnect();
+        throw new IOException(String.format("%s of %s failed with status %d: %s", method, serviceURL, status, message));
+      }
+      return new FilterInputStream(connection.getInputStream()) {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+          if (!closed) {
+            closed = true;
+            inFlight.release();
+            super.close();
+          }
+        }
+      };
+    } catch (IOException | RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for the given future to complete, rethrowing the cause of its failure, if any, as is.
+   */
+  public static <T> T getUnchecked(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private CompletableFuture<HttpResponse> submit(String method, Object body, Type bodyType) {
+    final HttpRequest request = createRequest(method, body, bodyType);
+    // applies backpressure, by blocking the caller until there is room for the request
+    inFlight.acquireUninterruptibly();
+    CompletableFuture<HttpResponse> response;
+    try {
+      response = CompletableFuture.supplyAsync(() -> send(request), EXECUTOR);
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+    return response.whenComplete((result, failure) -> inFlight.release());
+  }
+
+  private HttpRequest createRequest(String method, Object body, Type bodyType) {
+    try {
+      Codec codec = binaryCodec != null && binaryCodec.supports(bodyType) ? binaryCodec : jsonCodec;
+      byte[] encoded = codec.encode(body, bodyType);
+      HttpRequest.Builder request = HttpRequest.post(new URL(serviceURL, method))
+        .addHeader(HandlerCodec.CONTENT_TYPE_HEADER, codec.getContentType());
+      if (binaryCodec != null) {
+        request.addHeader(HandlerCodec.ACCEPT_HEADER, BinaryCodec.CONTENT_TYPE + ", " + JsonCodec.CONTENT_TYPE);
+      }
+      if (compression != Compression.NONE) {
+        request.addHeader(Compression.ACCEPT_ENCODING_HEADER, compression.getEncoding())
+          .addHeader(Compression.THRESHOLD_HEADER, String.valueOf(compressionThreshold));
+        if (encoded.length >= compressionThreshold) {
+          encoded = compression.compress(encoded);
+          request.addHeader(Compression.CONTENT_ENCODING_HEADER, compression.getEncoding());
+        }
+      }
+      request.withBody(ByteBuffer.wrap(encoded));
+      return request.build();
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private HttpResponse send(HttpRequest request) {
+    try {
+      return restClient.execute(request, clientConfig.getAccessToken());
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private Codec getCodec(HttpResponse response) {
+    if (binaryCodec != null) {
+      String contentType = getHeader(response, HandlerCodec.CONTENT_TYPE_HEADER);
+      if (contentType != null && contentType.contains(BinaryCodec.CONTENT_TYPE)) {
+        return binaryCodec;
+      }
+    }
+    return jsonCodec;
+  }
+
+  @Nullable
+  private static String getHeader(HttpResponse response, String name) {
+    for (Map.Entry<String, String> header : response.getHeaders().entries()) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import io.cdap.cdap.api.data.batch.Split;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Split} of a remote dataset, covering the keys from a start key (inclusive) to a stop key (exclusive).
+ */
+public final class RowRangeSplit extends Split {
+  @Nullable
+  private final byte[] start;
+  @Nullable
+  private final byte[] stop;
+
+  public RowRangeSplit(@Nullable byte[] start, @Nullable byte[] stop) {
+    this.start = start;
+    this.stop = stop;
+  }
+
+  /**
+   * @return the first key of the split, or {@code null} to start at the beginning of the dataset
+   */
+  @Nullable
+  public byte[] getStart() {
+    return start;
+  }
+
+  /**
+   * @return the key at which the split ends, or {@code null} to end at the end of the dataset
+   */
+  @Nullable
+  public byte[] getStop() {
+    return stop;
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A map of byte arrays sorted with {@link Bytes#BYTES_COMPARATOR}, which stores all keys back to back in one byte
+ * array, all values back to back in another, and the offset of each entry in two int arrays. Unlike a
+ * {@link java.util.TreeMap}, it does not allocate an entry object and two arrays for every entry, and keys are found
+ * by binary search over the offsets.
+ *
+ * Putting a key greater than all others appends it, which is the case when the map is built from the sorted
+ * responses of the dataset services. Putting any other key moves the entries after it, so building a large map from
+ * unsorted keys is slow. Keys and values are copied into the map when put, and copied out of it when read.
+ *
+ * Null values are not stored, since an absent key reads as {@code null} anyway: putting a {@code null} value removes
+ * the key. Maps which must keep the keys of {@code null} values, such as the values of a
+ * {@link io.cdap.cdap.api.dataset.table.Put}, are decoded into a {@link java.util.TreeMap} instead. This class is not
+ * thread-safe.
+ */
+public final class SortedBytesMap extends AbstractMap<byte[], byte[]> {
+
+  private static final byte[] EMPTY = new byte[0];
+  // number of entries allocated up front at most, so that an invalid expected size cannot exhaust the heap
+  private static final int MAX_INITIAL_CAPACITY = 4096;
+
+  private byte[] keyBytes;
+  private byte[] valueBytes;
+  // the key of entry i is at [keyOffsets[i], keyOffsets[i + 1]) of keyBytes, and likewise for values
+  private int[] keyOffsets;
+  private int[] valueOffsets;
+  private int size;
+
+  public SortedBytesMap() {
+    this(16);
+  }
+
+  /**
+   * @param expectedSize the number of entries to allocate room for, up to {@link #MAX_INITIAL_CAPACITY}. The map
+   *                     grows as entries are put, so the size, which may come from a request, is only a hint.
+   */
+  public SortedBytesMap(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size must not be negative: " + expectedSize);
+    }
+    int capacity = Math.min(expectedSize, MAX_INITIAL_CAPACITY);
+    this.keyBytes = new byte[capacity * 16];
+    this.valueBytes = new byte[capacity * 16];
+    this.keyOffsets = new int[capacity + 1];
+    this.valueOffsets = new int[capacity + 1];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof byte[] && indexOf((byte[]) key) >= 0;
+  }
+
+  @Nullable
+  @Override
+  public byte[] get(Object key) {
+    if (!(key instanceof byte[])) {
+      return null;
+    }
+    int index = indexOf((byte[]) key);
+    return index < 0 ? null : getValue(index);
+  }
+
+  @Nullable
+  @Override
+  public byte[] put(byte[] key, @Nullable byte[] value) {
+    if (value == null) {
+      return remove(key);
+    }
+    int index = indexOf(key);
+    if (index >= 0) {
+      byte[] previous = getValue(index);
+      valueBytes = splice(valueBytes, valueOffsets[size], valueOffsets[index], valueOffsets[index + 1], value);
+      shiftOffsets(valueOffsets, index + 1, value.length - previous.length);
+      return previous;
+    }
+    index = -(index + 1);
+    keyBytes = splice(keyBytes, keyOffsets[size], keyOffsets[index], keyOffsets[index], key);
+    valueBytes = splice(valueBytes, valueOffsets[size], valueOffsets[index], valueOffsets[index], value);
+    keyOffsets = insertOffset(keyOffsets, index, key.length);
+    valueOffsets = insertOffset(valueOffsets, index, value.length);
+    size++;
+    return null;
+  }
+
+  @Nullable
+  @Override
+  public byte[] remove(Object key) {
+    if (!(key instanceof byte[])) {
+      return null;
+    }
+    int index = indexOf((byte[]) key);
+    if (index < 0) {
+      return null;
+    }
+    byte[] previous = getValue(index);
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Releases the room allocated beyond the current entries.
+   */
+  public void trimToSize() {
+    keyBytes = Arrays.copyOf(keyBytes, keyOffsets[size]);
+    valueBytes = Arrays.copyOf(valueBytes, valueOffsets[size]);
+    keyOffsets = Arrays.copyOf(keyOffsets, size + 1);
+    valueOffsets = Arrays.copyOf(valueOffsets, size + 1);
+  }
+
+  @Override
+  public Set<Map.Entry<byte[], byte[]>> entrySet() {
+    return new AbstractSet<Map.Entry<byte[], byte[]>>() {
+      @Override
+      public Iterator<Map.Entry<byte[], byte[]>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private byte[] getKey(int index) {
+    return Arrays.copyOfRange(keyBytes, keyOffsets[index], keyOffsets[index + 1]);
+  }
+
+  private byte[] getValue(int index) {
+    return Arrays.copyOfRange(valueBytes, valueOffsets[index], valueOffsets[index + 1]);
+  }
+
+  /**
+   * @return the index of the key, or {@code -(insertion point) - 1} if it is absent, like
+   *         {@link Arrays#binarySearch(Object[], Object)}
+   */
+  private int indexOf(byte[] key) {
+    if (size == 0) {
+      return -1;
+    }
+    // keys are usually put in order, which this check answers without searching
+    int comparison = compareKeyAt(size - 1, key);
+    if (comparison <= 0) {
+      return comparison == 0 ? size - 1 : -(size + 1);
+    }
+    int low = 0;
+    int high = size - 2;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      comparison = compareKeyAt(middle, key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private int compareKeyAt(int index, byte[] key) {
+    int offset = keyOffsets[index];
+    return Bytes.compareTo(keyBytes, offset, keyOffsets[index + 1] - offset, key, 0, key.length);
+  }
+
+  private void removeAt(int index) {
+    int keyLength = keyOffsets[index + 1] - keyOffsets[index];
+    int valueLength = valueOffsets[index + 1] - valueOffsets[index];
+    keyBytes = splice(keyBytes, keyOffsets[size], keyOffsets[index], keyOffsets[index + 1], EMPTY);
+    valueBytes = splice(valueBytes, valueOffsets[size], valueOffsets[index], valueOffsets[index + 1], EMPTY);
+    System.arraycopy(keyOffsets, index + 2, keyOffsets, index + 1, size - index - 1);
+    System.arraycopy(valueOffsets, index + 2, valueOffsets, index + 1, size - index - 1);
+    size--;
+    shiftOffsets(keyOffsets, index + 1, -keyLength);
+    shiftOffsets(valueOffsets, index + 1, -valueLength);
+  }
+
+  /**
+   * Adds the given amount to the offsets from the given index up to the end of the entries.
+   */
+  private void shiftOffsets(int[] offsets, int from, int amount) {
+    if (amount != 0) {
+      for (int i = from; i <= size; i++) {
+        offsets[i] += amount;
+      }
+    }
+  }
+
+  /**
+   * Inserts the offsets of an entry of the given length at the given index, before {@link #size} is incremented.
+   *
+   * @return the offsets, which are copied to a larger array if they do not fit anymore
+   */
+  private int[] insertOffset(int[] offsets, int index, int length) {
+    if (size + 2 > offsets.length) {
+      offsets = Arrays.copyOf(offsets, Math.max(size + 2, offsets.length * 2));
+    }
+    System.arraycopy(offsets, index + 1, offsets, index + 2, size - index);
+    offsets[index + 1] = offsets[index];
+    for (int i = index + 1; i <= size + 1; i++) {
+      offsets[i] += length;
+    }
+    return offsets;
+  }
+
+  /**
+   * Replaces the range {@code [start, end)} of the first {@code used} bytes of the buffer with the given bytes.
+   *
+   * @return the buffer, which is copied to a larger array if the bytes do not fit anymore
+   */
+  private static byte[] splice(byte[] buffer, int used, int start, int end, byte[] bytes) {
+    int newUsed = used - (end - start) + bytes.length;
+    byte[] result = buffer;
+    if (newUsed > buffer.length) {
+      result = new byte[Math.max(newUsed, buffer.length * 2)];
+      System.arraycopy(buffer, 0, result, 0, start);
+    }
+    System.arraycopy(buffer, end, result, start + bytes.length, used - end);
+    System.arraycopy(bytes, 0, result, start, bytes.length);
+    return result;
+  }
+
+  /**
+   * Iterates over copies of the entries, in the order of their keys.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<byte[], byte[]>> {
+    private int next;
+    private boolean removable;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      removable = true;
+      int index = next++;
+      return new AbstractMap.SimpleImmutableEntry<>(getKey(index), getValue(index));
+    }
+
+    @Override
+    public void remove() {
+      if (!removable) {
+        throw new IllegalStateException();
+      }
+      removable = false;
+      removeAt(--next);
+    }
+  }
+}
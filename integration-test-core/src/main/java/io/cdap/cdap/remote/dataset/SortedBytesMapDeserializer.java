@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Deserializes a {@code Map<byte[], byte[]>}, written by a Gson with complex map key serialization enabled, into a
+ * {@link SortedBytesMap}. Like {@link io.cdap.cdap.remote.dataset.codec.BinaryFormats#readBytesMap}, it keeps the
+ * entries with a {@code null} value, which a {@link SortedBytesMap} cannot hold, so a {@link TreeMap} sorted with
+ * {@link Bytes#BYTES_COMPARATOR} is returned if there are any.
+ */
+public final class SortedBytesMapDeserializer implements JsonDeserializer<Map<byte[], byte[]>> {
+
+  @Override
+  public Map<byte[], byte[]> deserialize(JsonElement json, Type type,
+                                         JsonDeserializationContext context) throws JsonParseException {
+    if (json.isJsonObject()) {
+      // byte array keys are always written as an array of entries, so only an empty map is written as an object
+      if (!json.getAsJsonObject().entrySet().isEmpty()) {
+        throw new JsonParseException("Expected an array of map entries but was " + json);
+      }
+      return new SortedBytesMap(0);
+    }
+    SortedBytesMap map = new SortedBytesMap(json.getAsJsonArray().size());
+    Map<byte[], byte[]> withNulls = null;
+    for (JsonElement entry : json.getAsJsonArray()) {
+      byte[] key = context.deserialize(entry.getAsJsonArray().get(0), byte[].class);
+      byte[] value = context.deserialize(entry.getAsJsonArray().get(1), byte[].class);
+      if (value == null && withNulls == null) {
+        withNulls = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        withNulls.putAll(map);
+      }
+      if (withNulls == null) {
+        map.put(key, value);
+      } else {
+        withNulls.put(key, value);
+      }
+    }
+    if (withNulls != null) {
+      return withNulls;
+    }
+    map.trimToSize();
+    return map;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.BatchReadable;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.data.batch.SplitReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Translates between the splits of a dataset and the keys at which they start.
+ *
+ * The splits a dataset returns are specific to its implementation, so the dataset service describes them to clients
+ * by the first key of each split, which it finds by reading the first record of each split. Clients turn these keys
+ * back into contiguous {@link RowRangeSplit}s, which they read through a range scan.
+ */
+public final class SplitBoundaries {
+
+  private SplitBoundaries() { }
+
+  /**
+   * Finds the keys at which the given splits start. The first key is always the given start key, followed by the first
+   * keys of the non-empty splits in ascending order.
+   */
+  public static List<byte[]> getStartKeys(BatchReadable<byte[], ?> dataset, List<Split> splits,
+                                          @Nullable byte[] start) throws InterruptedException {
+    TreeSet<byte[]> firstKeys = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    for (Split split : splits) {
+      SplitReader<byte[], ?> reader = dataset.createSplitReader(split);
+      try {
+        reader.initialize(split);
+        if (reader.nextKeyValue()) {
+          firstKeys.add(reader.getCurrentKey());
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    List<byte[]> startKeys = new ArrayList<>(firstKeys.size() + 1);
+    startKeys.add(start);
+    // the first split covers everything from the start key on, so its own first key is not a boundary
+    if (!firstKeys.isEmpty()) {
+      startKeys.addAll(firstKeys.tailSet(firstKeys.first(), false));
+    }
+    return startKeys;
+  }
+
+  /**
+   * Creates contiguous splits from the start keys returned by {@link #getStartKeys}, the last of which ends at the
+   * given stop key.
+   */
+  public static List<Split> toSplits(byte[][] startKeys, @Nullable byte[] stop) {
+    List<Split> splits = new ArrayList<>(startKeys.length);
+    for (int i = 0; i < startKeys.length; i++) {
+      splits.add(new RowRangeSplit(startKeys[i], i + 1 < startKeys.length ? startKeys[i + 1] : stop));
+    }
+    return splits;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import javax.annotation.Nullable;
+
+/**
+ * Arguments for enumerating the splits of a dataset between a start and a stop key.
+ */
+public final class SplitsRequest {
+  private final int numSplits;
+  @Nullable
+  private final byte[] start;
+  @Nullable
+  private final byte[] stop;
+
+  public SplitsRequest(int numSplits, @Nullable byte[] start, @Nullable byte[] stop) {
+    this.numSplits = numSplits;
+    this.start = start;
+    this.stop = stop;
+  }
+
+  /**
+   * @return the requested number of splits, or a non-positive number to let the dataset decide
+   */
+  public int getNumSplits() {
+    return numSplits;
+  }
+
+  @Nullable
+  public byte[] getStart() {
+    return start;
+  }
+
+  @Nullable
+  public byte[] getStop() {
+    return stop;
+  }
+}
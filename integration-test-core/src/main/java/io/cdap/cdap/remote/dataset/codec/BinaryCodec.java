@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link Codec} which encodes values in a compact, length-prefixed binary format. Only the types for which a
+ * {@link BinaryFormat} was registered are supported. Generic types are looked up by equality, so the same
+ * {@link Type} instance should be used to register and to encode or decode them.
+ */
+public final class BinaryCodec implements Codec {
+  public static final String CONTENT_TYPE = "application/x-cdap-dataset-binary";
+
+  private final Map<Type, BinaryFormat<?>> formats = new HashMap<>();
+
+  /**
+   * Registers the format to use for the given type. Formats should all be registered before the codec is used.
+   *
+   * @return this codec
+   */
+  public <T> BinaryCodec register(Type type, BinaryFormat<T> format) {
+    formats.put(type, format);
+    return this;
+  }
+
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public boolean supports(Type type) {
+    return formats.containsKey(type);
+  }
+
+  @Override
+  public byte[] encode(Object value, Type type) throws IOException {
+    BinaryFormat<Object> format = getFormat(type);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      format.write(out, value);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public <T> T decode(byte[] bytes, Type type) throws IOException {
+    BinaryFormat<T> format = getFormat(type);
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      return format.read(in);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> BinaryFormat<T> getFormat(Type type) {
+    BinaryFormat<?> format = formats.get(type);
+    if (format == null) {
+      throw new IllegalArgumentException("No binary format registered for type " + type);
+    }
+    return (BinaryFormat<T>) format;
+  }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.SortedBytesMap;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * {@link BinaryFormat}s for the types shared by the dataset services, and helpers to write new ones.
+ * Variable-length values are prefixed with their length, and a length of -1 denotes {@code null}.
+ */
+public final class BinaryFormats {
+
+  public static final BinaryFormat<byte[]> BYTES = new BinaryFormat<byte[]>() {
+    @Override
+    public void write(DataOutput out, byte[] value) throws IOException {
+      writeBytes(out, value);
+    }
+
+    @Override
+    public byte[] read(DataInput in) throws IOException {
+      return readBytes(in);
+    }
+  };
+
+  public static final BinaryFormat<byte[][]> BYTES_ARRAY = new BinaryFormat<byte[][]>() {
+    @Override
+    public void write(DataOutput out, byte[][] value) throws IOException {
+      writeBytesArray(out, value);
+    }
+
+    @Override
+    public byte[][] read(DataInput in) throws IOException {
+      return readBytesArray(in);
+    }
+  };
+
+  public static final BinaryFormat<Map<byte[], byte[]>> BYTES_MAP = new BinaryFormat<Map<byte[], byte[]>>() {
+    @Override
+    public void write(DataOutput out, Map<byte[], byte[]> value) throws IOException {
+      writeBytesMap(out, value);
+    }
+
+    @Override
+    public Map<byte[], byte[]> read(DataInput in) throws IOException {
+      return readBytesMap(in);
+    }
+  };
+
+  public static final BinaryFormat<Boolean> BOOLEAN = new BinaryFormat<Boolean>() {
+    @Override
+    public void write(DataOutput out, Boolean value) throws IOException {
+      out.writeBoolean(value);
+    }
+
+    @Override
+    public Boolean read(DataInput in) throws IOException {
+      return in.readBoolean();
+    }
+  };
+
+  public static final BinaryFormat<Long> LONG = new BinaryFormat<Long>() {
+    @Override
+    public void write(DataOutput out, Long value) throws IOException {
+      out.writeLong(value);
+    }
+
+    @Override
+    public Long read(DataInput in) throws IOException {
+      return in.readLong();
+    }
+  };
+
+  public static final BinaryFormat<Result> RESULT = new BinaryFormat<Result>() {
+    @Override
+    public void write(DataOutput out, Result value) throws IOException {
+      writeBytes(out, value.getRow());
+      writeBytesMap(out, value.getColumns());
+    }
+
+    @Override
+    public Result read(DataInput in) throws IOException {
+      return new Result(readBytes(in), readBytesMap(in));
+    }
+  };
+
+  public static final BinaryFormat<Get> GET = new BinaryFormat<Get>() {
+    @Override
+    public void write(DataOutput out, Get value) throws IOException {
+      writeBytes(out, value.getRow());
+      writeBytesList(out, value.getColumns());
+    }
+
+    @Override
+    public Get read(DataInput in) throws IOException {
+      byte[] row = readBytes(in);
+      byte[][] columns = readBytesArray(in);
+      return columns == null ? new Get(row) : new Get(row, columns);
+    }
+  };
+
+  public static final BinaryFormat<Put> PUT = new BinaryFormat<Put>() {
+    @Override
+    public void write(DataOutput out, Put value) throws IOException {
+      writeBytes(out, value.getRow());
+      writeBytesMap(out, value.getValues());
+    }
+
+    @Override
+    public Put read(DataInput in) throws IOException {
+      Put put = new Put(readBytes(in));
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        put.add(readBytes(in), readBytes(in));
+      }
+      return put;
+    }
+  };
+
+  public static final BinaryFormat<Delete> DELETE = new BinaryFormat<Delete>() {
+    @Override
+    public void write(DataOutput out, Delete value) throws IOException {
+      writeBytes(out, value.getRow());
+      writeBytesList(out, value.getColumns());
+    }
+
+    @Override
+    public Delete read(DataInput in) throws IOException {
+      byte[] row = readBytes(in);
+      byte[][] columns = readBytesArray(in);
+      return columns == null ? new Delete(row) : new Delete(row, columns);
+    }
+  };
+
+  public static final BinaryFormat<Increment> INCREMENT = new BinaryFormat<Increment>() {
+    @Override
+    public void write(DataOutput out, Increment value) throws IOException {
+      writeBytes(out, value.getRow());
+      Map<byte[], Long> values = value.getValues();
+      out.writeInt(values.size());
+      for (Map.Entry<byte[], Long> entry : values.entrySet()) {
+        writeBytes(out, entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+    }
+
+    @Override
+    public Increment read(DataInput in) throws IOException {
+      Increment increment = new Increment(readBytes(in));
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        increment.add(readBytes(in), in.readLong());
+      }
+      return increment;
+    }
+  };
+
+  public static final BinaryFormat<SplitsRequest> SPLITS_REQUEST = new BinaryFormat<SplitsRequest>() {
+    @Override
+    public void write(DataOutput out, SplitsRequest value) throws IOException {
+      out.writeInt(value.getNumSplits());
+      writeBytes(out, value.getStart());
+      writeBytes(out, value.getStop());
+    }
+
+    @Override
+    public SplitsRequest read(DataInput in) throws IOException {
+      return new SplitsRequest(in.readInt(), readBytes(in), readBytes(in));
+    }
+  };
+
+  public static final BinaryFormat<KeyValue<byte[], byte[]>> KEY_VALUE = new BinaryFormat<KeyValue<byte[], byte[]>>() {
+    @Override
+    public void write(DataOutput out, KeyValue<byte[], byte[]> value) throws IOException {
+      writeBytes(out, value.getKey());
+      writeBytes(out, value.getValue());
+    }
+
+    @Override
+    public KeyValue<byte[], byte[]> read(DataInput in) throws IOException {
+      return new KeyValue<>(readBytes(in), readBytes(in));
+    }
+  };
+
+  private BinaryFormats() { }
+
+  /**
+   * @return a format for {@link Page}s of items in the given format
+   */
+  public static <T> BinaryFormat<Page<T>> pageOf(final BinaryFormat<T> itemFormat) {
+    return new BinaryFormat<Page<T>>() {
+      @Override
+      public void write(DataOutput out, Page<T> value) throws IOException {
+        List<T> items = value.getItems();
+        out.writeInt(items.size());
+        for (T item : items) {
+          itemFormat.write(out, item);
+        }
+        writeBytes(out, value.getResumeToken());
+      }
+
+      @Override
+      public Page<T> read(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<T> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          items.add(itemFormat.read(in));
+        }
+        return new Page<>(items, readBytes(in));
+      }
+    };
+  }
+
+  /**
+   * @param newArray creates an array of the given length
+   * @return a format for arrays of items in the given format
+   */
+  public static <T> BinaryFormat<T[]> arrayOf(final BinaryFormat<T> itemFormat, final IntFunction<T[]> newArray) {
+    return new BinaryFormat<T[]>() {
+      @Override
+      public void write(DataOutput out, T[] value) throws IOException {
+        out.writeInt(value.length);
+        for (T item : value) {
+          itemFormat.write(out, item);
+        }
+      }
+
+      @Override
+      public T[] read(DataInput in) throws IOException {
+        T[] items = newArray.apply(in.readInt());
+        for (int i = 0; i < items.length; i++) {
+          items[i] = itemFormat.read(in);
+        }
+        return items;
+      }
+    };
+  }
+
+  public static void writeBytes(DataOutput out, @Nullable byte[] bytes) throws IOException {
+    if (bytes == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  public static byte[] readBytes(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  public static void writeBytesArray(DataOutput out, @Nullable byte[][] array) throws IOException {
+    if (array == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(array.length);
+    for (byte[] bytes : array) {
+      writeBytes(out, bytes);
+    }
+  }
+
+  public static void writeBytesList(DataOutput out, @Nullable List<byte[]> list) throws IOException {
+    if (list == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(list.size());
+    for (byte[] bytes : list) {
+      writeBytes(out, bytes);
+    }
+  }
+
+  @Nullable
+  public static byte[][] readBytesArray(DataInput in) throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      return null;
+    }
+    byte[][] array = new byte[size][];
+    for (int i = 0; i < size; i++) {
+      array[i] = readBytes(in);
+    }
+    return array;
+  }
+
+  public static void writeBytesMap(DataOutput out, Map<byte[], byte[]> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<byte[], byte[]> entry : map.entrySet()) {
+      writeBytes(out, entry.getKey());
+      writeBytes(out, entry.getValue());
+    }
+  }
+
+  /**
+   * @return the map read, sorted with {@link Bytes#BYTES_COMPARATOR}. Like the maps decoded from JSON, it keeps the
+   *         entries with a {@code null} value, which a {@link SortedBytesMap} cannot hold, so a {@link TreeMap} is
+   *         returned if there are any.
+   */
+  public static Map<byte[], byte[]> readBytesMap(DataInput in) throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      throw new IOException("Invalid number of map entries: " + size);
+    }
+    SortedBytesMap map = new SortedBytesMap(size);
+    Map<byte[], byte[]> withNulls = null;
+    for (int i = 0; i < size; i++) {
+      byte[] key = readBytes(in);
+      byte[] value = readBytes(in);
+      if (value == null && withNulls == null) {
+        withNulls = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        withNulls.putAll(map);
+      }
+      if (withNulls == null) {
+        map.put(key, value);
+      } else {
+        withNulls.put(key, value);
+      }
+    }
+    if (withNulls != null) {
+      return withNulls;
+    }
+    map.trimToSize();
+    return map;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Encodes and decodes the bodies of requests to and responses from the dataset services.
+ */
+public interface Codec {
+
+  /**
+   * @return the content type which identifies this codec in the Content-Type and Accept headers
+   */
+  String getContentType();
+
+  /**
+   * @return whether this codec can encode and decode values of the given type
+   */
+  boolean supports(Type type);
+
+  byte[] encode(Object value, Type type) throws IOException;
+
+  <T> T decode(byte[] bytes, Type type) throws IOException;
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Compression of request and response bodies, identified by the value of the Content-Encoding header. GZIP gives
+ * the smaller bodies, while SNAPPY is much cheaper to compute and suits large bodies on fast networks.
+ */
+public enum Compression {
+  NONE("identity") {
+    @Override
+    public byte[] compress(byte[] bytes) {
+      return bytes;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+      return bytes;
+    }
+  },
+  GZIP("gzip") {
+    @Override
+    public byte[] compress(byte[] bytes) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+        gzip.write(bytes);
+      }
+      return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+      try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = gzip.read(buffer)) >= 0) {
+          out.write(buffer, 0, read);
+        }
+      }
+      return out.toByteArray();
+    }
+  },
+  SNAPPY("snappy") {
+    @Override
+    public byte[] compress(byte[] bytes) throws IOException {
+      return Snappy.compress(bytes);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) throws IOException {
+      return Snappy.uncompress(bytes);
+    }
+  };
+
+  public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  // sent by the client: the minimum size in bytes of a response body at which the server compresses it
+  public static final String THRESHOLD_HEADER = "X-Compression-Threshold";
+  public static final int DEFAULT_THRESHOLD = 4096;
+
+  private final String encoding;
+
+  Compression(String encoding) {
+    this.encoding = encoding;
+  }
+
+  /**
+   * @return the value of the Content-Encoding header of a body compressed this way
+   */
+  public String getEncoding() {
+    return encoding;
+  }
+
+  public abstract byte[] compress(byte[] bytes) throws IOException;
+
+  public abstract byte[] decompress(byte[] bytes) throws IOException;
+
+  /**
+   * Returns the compression of a body with the given Content-Encoding header.
+   *
+   * @throws IllegalArgumentException if the encoding is not supported
+   */
+  public static Compression fromEncoding(@Nullable String encoding) {
+    if (encoding == null || encoding.isEmpty()) {
+      return NONE;
+    }
+    for (Compression compression : values()) {
+      if (compression.encoding.equalsIgnoreCase(encoding.trim())) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported content encoding " + encoding);
+  }
+
+  /**
+   * Returns the first supported compression listed in the given Accept-Encoding header, or {@link #NONE} if there is
+   * none. Quality values are ignored.
+   */
+  public static Compression fromAcceptEncoding(@Nullable String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return NONE;
+    }
+    for (String accepted : acceptEncoding.split(",")) {
+      int parameters = accepted.indexOf(';');
+      String encoding = (parameters < 0 ? accepted : accepted.substring(0, parameters)).trim();
+      for (Compression compression : values()) {
+        if (compression != NONE && compression.encoding.equalsIgnoreCase(encoding)) {
+          return compression;
+        }
+      }
+    }
+    return NONE;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Decodes request bodies and encodes response bodies in an HttpHandler of a dataset service. The request body is
+ * decoded according to its Content-Type header, and the response is encoded in the binary format if the Accept
+ * header of the request lists it and the response type is supported by the {@link BinaryCodec}, otherwise as JSON.
+ * Requests without these headers are therefore handled as JSON.
+ *
+ * Request bodies are decompressed according to their Content-Encoding header. Response bodies are compressed with
+ * the first {@link Compression} listed in the Accept-Encoding header of the request, if they are at least as large as
+ * the threshold given by the request, or {@link Compression#DEFAULT_THRESHOLD} bytes.
+ */
+public final class HandlerCodec {
+  public static final String CONTENT_TYPE_HEADER = "Content-Type";
+  public static final String ACCEPT_HEADER = "Accept";
+
+  private final JsonCodec jsonCodec;
+  private final BinaryCodec binaryCodec;
+
+  public HandlerCodec(JsonCodec jsonCodec, BinaryCodec binaryCodec) {
+    this.jsonCodec = jsonCodec;
+    this.binaryCodec = binaryCodec;
+  }
+
+  public <T> T decode(HttpServiceRequest request, Type type) throws IOException {
+    Codec codec = isBinary(request.getHeader(CONTENT_TYPE_HEADER)) ? binaryCodec : jsonCodec;
+    Compression compression = Compression.fromEncoding(request.getHeader(Compression.CONTENT_ENCODING_HEADER));
+    return codec.decode(compression.decompress(Bytes.toBytes(request.getContent())), type);
+  }
+
+  public void respond(HttpServiceRequest request, HttpServiceResponder responder,
+                      Object value, Type type) throws IOException {
+    Codec codec = isBinary(request.getHeader(ACCEPT_HEADER)) && binaryCodec.supports(type) ? binaryCodec : jsonCodec;
+    byte[] body = codec.encode(value, type);
+    Map<String, String> headers = Collections.emptyMap();
+    Compression compression = Compression.fromAcceptEncoding(request.getHeader(Compression.ACCEPT_ENCODING_HEADER));
+    if (compression != Compression.NONE && body.length >= getCompressionThreshold(request)) {
+      body = compression.compress(body);
+      headers = Collections.singletonMap(Compression.CONTENT_ENCODING_HEADER, compression.getEncoding());
+    }
+    responder.send(200, ByteBuffer.wrap(body), codec.getContentType(), headers);
+  }
+
+  private static int getCompressionThreshold(HttpServiceRequest request) {
+    String threshold = request.getHeader(Compression.THRESHOLD_HEADER);
+    return threshold == null ? Compression.DEFAULT_THRESHOLD : Integer.parseInt(threshold.trim());
+  }
+
+  private static boolean isBinary(@Nullable String header) {
+    return header != null && header.contains(BinaryCodec.CONTENT_TYPE);
+  }
+}
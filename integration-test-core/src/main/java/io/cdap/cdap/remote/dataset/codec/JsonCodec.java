@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Codec} which encodes values as JSON, using a {@link Gson}. Supports every type, so it is used whenever the
+ * other side of the connection, or the {@link BinaryCodec}, does not support a type.
+ */
+public final class JsonCodec implements Codec {
+  public static final String CONTENT_TYPE = "application/json";
+
+  private final Gson gson;
+
+  public JsonCodec(Gson gson) {
+    this.gson = gson;
+  }
+
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public boolean supports(Type type) {
+    return true;
+  }
+
+  @Override
+  public byte[] encode(Object value, Type type) {
+    return gson.toJson(value, type).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public <T> T decode(byte[] bytes, Type type) {
+    return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), type);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.cube;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
+import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.client.config.ClientConfig;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous client of a Cube dataset service. Every operation is sent as soon as it is called, and returns
+ * a {@link CompletableFuture} that completes with the response, so that many operations can be in flight at once.
+ *
+ * @see RemoteDatasetClient for the limit on the number of operations in flight
+ */
+public class AsyncRemoteCube {
+
+  private static final Gson GSON = new GsonBuilder()
+    .enableComplexMapKeySerialization()
+    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
+    .create();
+  private static final JsonCodec JSON_CODEC = new JsonCodec(GSON);
+  private static final Type TIME_SERIES_TYPE = new TypeToken<Collection<TimeSeries>>() { }.getType();
+  private static final Type DIMENSION_VALUES_TYPE = new TypeToken<Collection<DimensionValue>>() { }.getType();
+  private static final Type MEASURE_NAMES_TYPE = new TypeToken<Collection<String>>() { }.getType();
+  private static final Type AGGREGATIONS_TYPE = new TypeToken<List<List<String>>>() { }.getType();
+
+  private final RemoteDatasetClient client;
+
+  public AsyncRemoteCube(URL serviceURL, RESTClient restClient, ClientConfig clientConfig) {
+    // the Cube service is served by CDAP's AbstractCubeHttpHandler, which only understands JSON
+    this.client = new RemoteDatasetClient(serviceURL, restClient, clientConfig, JSON_CODEC, null);
+  }
+
+  public CompletableFuture<Void> add(Collection<? extends CubeFact> facts) {
+    return client.executeAsync("add", facts, facts.getClass());
+  }
+
+  public CompletableFuture<Collection<TimeSeries>> query(CubeQuery query) {
+    return client.executeAsync("query", query, CubeQuery.class, TIME_SERIES_TYPE);
+  }
+
+  /**
+   * Runs a query, and returns its time series as they are read from the response. Unlike the other operations, this
+   * waits for the service to start responding. The iterator must be closed if it is not read to the end.
+   */
+  public CloseableIterator<TimeSeries> queryStream(CubeQuery query) throws IOException {
+    InputStream stream = client.openStream("queryStream", query, CubeQuery.class);
+    return new TimeSeriesIterator(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Deletes the facts of a request in slices of its time range, up to the maximum number of slices of the request.
+   */
+  public CompletableFuture<DeleteResult> delete(DeleteRequest deleteRequest) {
+    return client.executeAsync("delete", deleteRequest, DeleteRequest.class, DeleteResult.class);
+  }
+
+  /**
+   * Fetches the dimension names of each aggregation of the cube.
+   */
+  public CompletableFuture<List<List<String>>> getAggregations() {
+    return client.executeAsync("aggregations", "", String.class, AGGREGATIONS_TYPE);
+  }
+
+  public CompletableFuture<Collection<DimensionValue>> findDimensionValues(CubeExploreQuery query) {
+    return client.executeAsync("searchDimensionValue", query, CubeExploreQuery.class, DIMENSION_VALUES_TYPE);
+  }
+
+  public CompletableFuture<Collection<String>> findMeasureNames(CubeExploreQuery query) {
+    return client.executeAsync("searchMeasure", query, CubeExploreQuery.class, MEASURE_NAMES_TYPE);
+  }
+
+  /**
+   * Decodes the time series of a streamed query result, which are separated by newlines, one at a time.
+   */
+  private static final class TimeSeriesIterator extends AbstractIterator<TimeSeries>
+    implements CloseableIterator<TimeSeries> {
+    private final BufferedReader reader;
+
+    TimeSeriesIterator(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    protected TimeSeries computeNext() {
+      try {
+        String line = reader.readLine();
+        if (line == null) {
+          close();
+          return endOfData();
+        }
+        return GSON.fromJson(line, TimeSeries.class);
+      } catch (IOException e) {
+        close();
+        throw Throwables.propagate(e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+}
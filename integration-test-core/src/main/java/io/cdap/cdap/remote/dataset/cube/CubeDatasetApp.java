@@ -16,12 +16,42 @@
 
 package io.cdap.cdap.remote.dataset.cube;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.api.Transactional;
 import io.cdap.cdap.api.annotation.Property;
+import io.cdap.cdap.api.annotation.TransactionControl;
+import io.cdap.cdap.api.annotation.TransactionPolicy;
 import io.cdap.cdap.api.dataset.Dataset;
 import io.cdap.cdap.api.dataset.lib.cube.AbstractCubeHttpHandler;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
+import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
+import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.service.http.HttpContentProducer;
 import io.cdap.cdap.api.service.http.HttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
 import io.cdap.cdap.remote.dataset.AbstractDatasetApp;
+import io.cdap.cdap.remote.dataset.codec.BinaryCodec;
+import io.cdap.cdap.remote.dataset.codec.HandlerCodec;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
 
 /**
  * Application which allows reading or writing to a {@link Cube}.
@@ -41,8 +71,22 @@ public class CubeDatasetApp extends AbstractDatasetApp {
   /**
    * A basic implementation of {@link io.cdap.cdap.api.service.http.HttpServiceHandler} that provides endpoints to
    * explore and execute queries in {@link Cube} dataset.
+   *
+   * The endpoints are those of {@link AbstractCubeHttpHandler}, overridden to go through a {@link HandlerCodec}, so
+   * that request and response bodies can be compressed. Bodies are always JSON. The results of a query can also be
+   * streamed one time series at a time, and facts can be deleted in slices of their time range.
    */
   public static class CubeHttpHandler extends AbstractCubeHttpHandler {
+    private static final Gson GSON = new GsonBuilder().enableComplexMapKeySerialization().create();
+    private static final HandlerCodec CODEC = new HandlerCodec(new JsonCodec(GSON), new BinaryCodec());
+    private static final Type AGGREGATIONS_TYPE = new TypeToken<List<List<String>>>() { }.getType();
+    // dataset properties which define the dimension names of each aggregation of a cube
+    private static final String AGGREGATION_PROPERTY_PREFIX = "dataset.cube.aggregation.";
+    private static final String DIMENSIONS_PROPERTY_SUFFIX = ".dimensions";
+    // content type of the streamed results of a query, which are JSON time series separated by newlines
+    static final String STREAM_CONTENT_TYPE = "application/x-ndjson";
+    // number of characters of serialized time series from which a chunk of a streamed query result is written
+    private static final int STREAM_CHUNK_CHARS = 64 * 1024;
 
     @Property
     private final String datasetName;
@@ -55,5 +99,205 @@ public class CubeDatasetApp extends AbstractDatasetApp {
     protected Cube getCube() {
       return getContext().getDataset(datasetName);
     }
+
+    /**
+     * @return the name of the {@link Cube} dataset that a request operates on, which is the one of the handler by
+     *         default
+     */
+    protected String getDatasetName(HttpServiceRequest request) {
+      return datasetName;
+    }
+
+    private Cube getCube(HttpServiceRequest request) {
+      return getContext().getDataset(getDatasetName(request));
+    }
+
+    @Path("add")
+    @POST
+    @Override
+    public void add(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        CubeFact[] facts = CODEC.decode(request, CubeFact[].class);
+        getCube(request).add(Arrays.asList(facts));
+        responder.sendStatus(200);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    @Path("searchDimensionValue")
+    @POST
+    @Override
+    public void searchDimensionValue(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        CubeExploreQuery query = CODEC.decode(request, CubeExploreQuery.class);
+        Collection<DimensionValue> dimensionValues = getCube(request).findDimensionValues(query);
+        CODEC.respond(request, responder, dimensionValues, Collection.class);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    @Path("searchMeasure")
+    @POST
+    @Override
+    public void searchMeasure(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        CubeExploreQuery query = CODEC.decode(request, CubeExploreQuery.class);
+        Collection<String> measureNames = getCube(request).findMeasureNames(query);
+        CODEC.respond(request, responder, measureNames, Collection.class);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    @Path("query")
+    @POST
+    @Override
+    public void query(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        CubeQuery query = CODEC.decode(request, CubeQuery.class);
+        Collection<TimeSeries> timeSeries = getCube(request).query(query);
+        CODEC.respond(request, responder, timeSeries, Collection.class);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    /**
+     * Streams the time series of a query as JSON, one series per line. The query runs once, and the series are
+     * serialized a chunk of about {@link #STREAM_CHUNK_CHARS} characters at a time while the response is written, so
+     * that the service never holds the serialized result. The result of the query itself is held by the cube, since
+     * {@link Cube#query} returns a collection.
+     */
+    @Path("queryStream")
+    @POST
+    public void queryStream(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        CubeQuery query = CODEC.decode(request, CubeQuery.class);
+        Iterator<TimeSeries> series = getCube(request).query(query).iterator();
+        responder.send(200, new TimeSeriesProducer(series), STREAM_CONTENT_TYPE);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    /**
+     * Deletes the facts of a request in consecutive slices of its time range, each in its own transaction, so that
+     * no transaction has to delete more than one slice worth of rows. Slices in which no measure matching the
+     * request is found are skipped without deleting. Stops after the requested number of slices, responding with
+     * the number of deleted and skipped slices and the start of the next slice, if any.
+     */
+    @Path("delete")
+    @POST
+    @TransactionPolicy(TransactionControl.EXPLICIT)
+    public void delete(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        final DeleteRequest deleteRequest = CODEC.decode(request, DeleteRequest.class);
+        final String name = getDatasetName(request);
+        final int[] slices = new int[2];
+        long sliceStartTs = deleteRequest.getStartTs();
+        while (sliceStartTs <= deleteRequest.getEndTs() && slices[0] + slices[1] < deleteRequest.getMaxSlices()) {
+          final CubeDeleteQuery sliceQuery = deleteRequest.getSliceQuery(sliceStartTs);
+          getContext().execute(context -> {
+            Cube cube = context.getDataset(name);
+            if (hasMeasures(cube, sliceQuery)) {
+              cube.delete(sliceQuery);
+              slices[0]++;
+            } else {
+              slices[1]++;
+            }
+          });
+          sliceStartTs += deleteRequest.getSliceSeconds();
+        }
+        Long resumeTs = sliceStartTs <= deleteRequest.getEndTs() ? sliceStartTs : null;
+        CODEC.respond(request, responder, new DeleteResult(slices[0], slices[1], resumeTs), DeleteResult.class);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    /**
+     * Responds with the dimension names of each aggregation of the cube, as defined by the properties of the dataset,
+     * so that clients can evaluate the tag predicate of a delete query.
+     */
+    @Path("aggregations")
+    @POST
+    public void aggregations(HttpServiceRequest request, HttpServiceResponder responder) {
+      try {
+        Map<String, String> properties =
+          getContext().getAdmin().getDatasetProperties(getDatasetName(request)).getProperties();
+        List<List<String>> aggregations = new ArrayList<>();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+          String key = property.getKey();
+          if (!key.startsWith(AGGREGATION_PROPERTY_PREFIX) || !key.endsWith(DIMENSIONS_PROPERTY_SUFFIX)) {
+            continue;
+          }
+          List<String> dimensionNames = new ArrayList<>();
+          for (String dimensionName : property.getValue().split(",")) {
+            if (!dimensionName.trim().isEmpty()) {
+              dimensionNames.add(dimensionName.trim());
+            }
+          }
+          aggregations.add(dimensionNames);
+        }
+        CODEC.respond(request, responder, aggregations, AGGREGATIONS_TYPE);
+      } catch (Exception e) {
+        responder.sendError(500, e.getMessage());
+      }
+    }
+
+    /**
+     * Returns whether any of the measures of a delete query has facts within its time range, at any of its
+     * resolutions.
+     */
+    private static boolean hasMeasures(Cube cube, CubeDeleteQuery query) {
+      List<DimensionValue> dimensionValues = new ArrayList<>();
+      for (Map.Entry<String, String> dimensionValue : query.getDimensionValues().entrySet()) {
+        dimensionValues.add(new DimensionValue(dimensionValue.getKey(), dimensionValue.getValue()));
+      }
+      for (int resolution : query.getResolutions()) {
+        Collection<String> measureNames = cube.findMeasureNames(
+          new CubeExploreQuery(query.getStartTs(), query.getEndTs(), resolution, Integer.MAX_VALUE, dimensionValues));
+        for (String measureName : measureNames) {
+          if (query.getMeasureNames().isEmpty() || query.getMeasureNames().contains(measureName)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+  }
+
+  /**
+   * Writes time series as JSON, one per line, a chunk at a time.
+   */
+  private static final class TimeSeriesProducer extends HttpContentProducer {
+    private final Iterator<TimeSeries> series;
+
+    TimeSeriesProducer(Iterator<TimeSeries> series) {
+      this.series = series;
+    }
+
+    @Override
+    public ByteBuffer nextChunk(Transactional transactional) {
+      // an empty chunk ends the response
+      StringBuilder chunk = new StringBuilder();
+      while (series.hasNext() && chunk.length() < CubeHttpHandler.STREAM_CHUNK_CHARS) {
+        chunk.append(CubeHttpHandler.GSON.toJson(series.next(), TimeSeries.class)).append('\n');
+      }
+      return ByteBuffer.wrap(chunk.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onFinish() {
+      // nothing to release, the series were read before the response started
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+      // nothing to release, and the client sees the response end early
+    }
   }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.cube;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of the results of Cube queries, keyed on the query with the entries of its maps in sorted order.
+ *
+ * Only results whose time range ends before the current, still open, bucket of their resolution are cached, since
+ * other clients may still add facts to the open bucket. Adding facts through the same client invalidates the results
+ * whose time range overlaps the buckets of the added facts.
+ */
+final class CubeQueryCache {
+
+  private static final Gson GSON = new Gson();
+
+  private final Cache<Key, Collection<?>> cache;
+  // incremented on every invalidation, so that results read before an invalidation are not cached after it
+  private long generation;
+
+  CubeQueryCache(int maxSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+  }
+
+  /**
+   * Returns the cached result of a query, or loads it and caches it if its time range is closed.
+   *
+   * @param operation the name of the operation, which distinguishes queries of different types
+   * @param startTs the start of the time range of the query, in seconds
+   * @param endTs the end of the time range of the query, in seconds
+   * @param resolution the resolution of the query, in seconds
+   */
+  @SuppressWarnings("unchecked")
+  <T extends Collection<?>> T get(String operation, Object query, long startTs, long endTs, int resolution,
+                                  Supplier<T> loader) {
+    long nowInSec = System.currentTimeMillis() / 1000;
+    if (endTs >= nowInSec - nowInSec % resolution) {
+      return loader.get();
+    }
+    Key key = new Key(operation + ":" + normalize(GSON.toJsonTree(query)), startTs, endTs, resolution);
+    long loadGeneration;
+    synchronized (this) {
+      Collection<?> result = cache.getIfPresent(key);
+      if (result != null) {
+        return (T) result;
+      }
+      loadGeneration = generation;
+    }
+    T result = loader.get();
+    synchronized (this) {
+      if (generation == loadGeneration) {
+        cache.put(key, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Invalidates the cached results whose time range overlaps the buckets of the given facts.
+   */
+  synchronized void invalidate(Collection<? extends CubeFact> facts) {
+    if (facts.isEmpty()) {
+      return;
+    }
+    long minTs = Long.MAX_VALUE;
+    long maxTs = Long.MIN_VALUE;
+    for (CubeFact fact : facts) {
+      minTs = Math.min(minTs, fact.getTimestamp());
+      maxTs = Math.max(maxTs, fact.getTimestamp());
+    }
+    invalidate(minTs, maxTs);
+  }
+
+  /**
+   * Invalidates the cached results whose time range overlaps the buckets of the timestamps between the given ones.
+   */
+  synchronized void invalidate(final long firstTs, final long lastTs) {
+    generation++;
+    cache.asMap().keySet().removeIf(key -> key.overlaps(firstTs, lastTs));
+  }
+
+  CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns a copy of a JSON element with the members of all of its objects sorted by name.
+   */
+  private static JsonElement normalize(JsonElement element) {
+    if (element.isJsonArray()) {
+      JsonArray array = new JsonArray();
+      for (JsonElement item : element.getAsJsonArray()) {
+        array.add(normalize(item));
+      }
+      return array;
+    }
+    if (!element.isJsonObject()) {
+      return element;
+    }
+    Map<String, JsonElement> members = new TreeMap<>();
+    for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+      members.put(member.getKey(), normalize(member.getValue()));
+    }
+    JsonObject object = new JsonObject();
+    for (Map.Entry<String, JsonElement> member : members.entrySet()) {
+      object.add(member.getKey(), member.getValue());
+    }
+    return object;
+  }
+
+  /**
+   * Normalized query, along with its time range. Only the normalized query identifies the key.
+   */
+  private static final class Key {
+    private final String query;
+    private final long startTs;
+    private final long endTs;
+    private final int resolution;
+
+    Key(String query, long startTs, long endTs, int resolution) {
+      this.query = query;
+      this.startTs = startTs;
+      this.endTs = endTs;
+      this.resolution = resolution;
+    }
+
+    /**
+     * Returns whether the buckets of the timestamps between the given ones overlap the time range of the query.
+     */
+    boolean overlaps(long firstTs, long lastTs) {
+      long firstBucket = firstTs - firstTs % resolution;
+      long lastBucket = lastTs - lastTs % resolution;
+      return firstBucket <= endTs && lastBucket + resolution > startTs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      return query.equals(((Key) o).query);
+    }
+
+    @Override
+    public int hashCode() {
+      return query.hashCode();
+    }
+  }
+}
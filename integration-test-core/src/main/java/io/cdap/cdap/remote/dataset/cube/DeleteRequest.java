@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Arguments for deleting the facts of a {@link CubeDeleteQuery} in slices of its time range. The tag predicate of the
+ * query can't be serialized, so the request carries the dimension names of the aggregations that it accepts instead.
+ */
+public final class DeleteRequest {
+  private final long startTs;
+  private final long endTs;
+  private final Collection<Integer> resolutions;
+  private final Map<String, String> dimensionValues;
+  private final Collection<String> measureNames;
+  // dimension names of the aggregations to delete from, or null to delete from all aggregations
+  @Nullable
+  private final List<List<String>> aggregations;
+  private final long sliceSeconds;
+  private final int maxSlices;
+
+  /**
+   * @param aggregations the dimension names of the aggregations that the tag predicate of the query accepts, or
+   *                     {@code null} if it accepts all of them
+   */
+  public DeleteRequest(CubeDeleteQuery query, @Nullable List<List<String>> aggregations, long startTs,
+                       long sliceSeconds, int maxSlices) {
+    this.startTs = startTs;
+    this.endTs = query.getEndTs();
+    this.resolutions = new ArrayList<>(query.getResolutions());
+    this.dimensionValues = new HashMap<>(query.getDimensionValues());
+    this.measureNames = new ArrayList<>(query.getMeasureNames());
+    this.aggregations = aggregations;
+    this.sliceSeconds = sliceSeconds;
+    this.maxSlices = maxSlices;
+  }
+
+  /**
+   * @return the start of the first slice to delete, in seconds
+   */
+  public long getStartTs() {
+    return startTs;
+  }
+
+  public long getEndTs() {
+    return endTs;
+  }
+
+  public Collection<Integer> getResolutions() {
+    return resolutions;
+  }
+
+  public Map<String, String> getDimensionValues() {
+    return dimensionValues;
+  }
+
+  public Collection<String> getMeasureNames() {
+    return measureNames;
+  }
+
+  @Nullable
+  public List<List<String>> getAggregations() {
+    return aggregations;
+  }
+
+  /**
+   * @return the length of the time range deleted in one transaction, in seconds
+   */
+  public long getSliceSeconds() {
+    return sliceSeconds;
+  }
+
+  /**
+   * @return the maximum number of slices to delete in one request
+   */
+  public int getMaxSlices() {
+    return maxSlices;
+  }
+
+  /**
+   * @return the query that deletes the slice starting at the given timestamp, and ending at the next slice
+   */
+  public CubeDeleteQuery getSliceQuery(long sliceStartTs) {
+    long sliceEndTs = Math.min(endTs, sliceStartTs + sliceSeconds);
+    if (aggregations == null) {
+      return new CubeDeleteQuery(sliceStartTs, sliceEndTs, resolutions, dimensionValues, measureNames);
+    }
+    final List<List<String>> acceptedAggregations = aggregations;
+    return new CubeDeleteQuery(sliceStartTs, sliceEndTs, resolutions, dimensionValues, measureNames,
+                               acceptedAggregations::contains);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.cube;
+
+import javax.annotation.Nullable;
+
+/**
+ * Progress of deleting the facts of a {@link DeleteRequest}.
+ */
+public final class DeleteResult {
+  private final int deletedSlices;
+  private final int prunedSlices;
+  @Nullable
+  private final Long resumeTs;
+
+  public DeleteResult(int deletedSlices, int prunedSlices, @Nullable Long resumeTs) {
+    this.deletedSlices = deletedSlices;
+    this.prunedSlices = prunedSlices;
+    this.resumeTs = resumeTs;
+  }
+
+  /**
+   * @return the number of slices in which rows were found and deleted
+   */
+  public int getDeletedSlices() {
+    return deletedSlices;
+  }
+
+  /**
+   * @return the number of slices which were skipped, because no rows matching the request were found in them
+   */
+  public int getPrunedSlices() {
+    return prunedSlices;
+  }
+
+  /**
+   * @return the start of the next slice to delete, or {@code null} if the whole time range was deleted
+   */
+  @Nullable
+  public Long getResumeTs() {
+    return resumeTs;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.service.http.HttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.remote.dataset.AbstractMultiDatasetApp;
+
+import javax.ws.rs.Path;
+
+/**
+ * Application which allows reading or writing to any {@link Cube} of its namespace.
+ */
+public class MultiCubeDatasetApp extends AbstractMultiDatasetApp {
+
+  @Override
+  protected HttpServiceHandler getMultiDatasetHttpHandler() {
+    return new MultiCubeHttpHandler();
+  }
+
+  /**
+   * HttpHandler to make API calls on the Cube named by the path of each request.
+   */
+  @Path(DATASET_PATH)
+  public static class MultiCubeHttpHandler extends CubeDatasetApp.CubeHttpHandler {
+
+    public MultiCubeHttpHandler() {
+      // the handler has no dataset of its own
+      super(null);
+    }
+
+    @Override
+    protected Cube getCube() {
+      throw new UnsupportedOperationException("The Cube is named by the path of each request.");
+    }
+
+    @Override
+    protected String getDatasetName(HttpServiceRequest request) {
+      return AbstractMultiDatasetApp.getDatasetName(request);
+    }
+  }
+}
@@ -16,83 +16,281 @@
 
 package io.cdap.cdap.remote.dataset.cube;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.cache.CacheStats;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
 import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
 import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
 import io.cdap.cdap.client.config.ClientConfig;
 import io.cdap.cdap.client.util.RESTClient;
-import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
-import io.cdap.common.http.HttpMethod;
-import io.cdap.common.http.HttpResponse;
+import io.cdap.cdap.remote.dataset.AgedBufferFlusher;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Flushable;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 /**
- * Remote implementation of Cube.
+ * Remote implementation of Cube, which sends all operations through an {@link AsyncRemoteCube} and waits for their
+ * completion.
+ *
+ * If {@code remote.cube.buffer.size} is greater than 1, added facts are buffered on the client instead. Facts with
+ * the same timestamp and dimension values are merged into one, summing the values of each COUNTER measure and keeping
+ * the last value of each GAUGE measure. Once that many merged facts are buffered, or once the oldest one is older than
+ * {@code remote.cube.buffer.age.ms}, they are sent as one batch without waiting for the response. Batches are sent one
+ * after the other, so that the last value of a gauge is also the last one applied. The age is enforced by a flush
+ * scheduled on a background thread, so buffered facts are sent even if no further fact is added. Once
+ * {@code remote.cube.max.pending.batches} batches are pending, adding facts waits for the oldest batch to complete.
+ * A batch which fails is not retried, and its failure is thrown by the next operation. Buffered facts are sent before
+ * any query, and {@link #flush()} waits for all batches to complete.
+ *
+ * If {@code remote.cube.query.cache.size} is greater than 0, the results of {@link #query} and
+ * {@link #findDimensionValues} are kept in an LRU cache of that many queries, as long as their time range ends before
+ * the current bucket of their resolution. Adding facts through this client invalidates the cached results whose time
+ * range overlaps the buckets of the facts. See {@link #getQueryCacheStats()} for the hits and misses of the cache.
+ *
+ * {@link #queryStreaming} reads the results of a query one time series at a time, as the service streams them.
+ *
+ * {@link #delete} is run by the service in slices of {@code remote.cube.delete.slice.seconds} of the time range,
+ * each in its own transaction, skipping the slices that have no matching facts.
  */
-public class RemoteCube implements Cube {
+public class RemoteCube implements Cube, Flushable {
 
-  private static final Gson GSON = new GsonBuilder()
-    .enableComplexMapKeySerialization()
-    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
-    .create();
+  private static final Logger LOG = LoggerFactory.getLogger(RemoteCube.class);
+  // maximum number of slices that the service deletes in one request, so that requests complete in bounded time
+  private static final int DELETE_SLICES_PER_REQUEST = 10;
 
-  private final URL serviceURL;
-  private final RESTClient restClient;
-  private final ClientConfig clientConfig;
+  // maximum number of merged facts to buffer before sending them to the service
+  public static final String BUFFER_SIZE = "remote.cube.buffer.size";
+  // maximum amount of time in milliseconds that a fact is buffered for
+  public static final String BUFFER_AGE_MS = "remote.cube.buffer.age.ms";
+  // maximum number of batches which are sent or waiting to be sent at the same time
+  public static final String MAX_PENDING_BATCHES = "remote.cube.max.pending.batches";
+  // maximum number of query results to cache, or 0 to not cache query results
+  public static final String QUERY_CACHE_SIZE = "remote.cube.query.cache.size";
+  // length in seconds of the slices of the time range that are deleted in one transaction
+  public static final String DELETE_SLICE_SECONDS = "remote.cube.delete.slice.seconds";
+
+  private final AsyncRemoteCube asyncCube;
+  private final int maxBufferedFacts;
+  private final long maxBufferAgeMillis;
+  private final int maxPendingBatches;
+  @Nullable
+  private final CubeQueryCache queryCache;
+  private final long deleteSliceSeconds;
+  // measures of the buffered facts, by timestamp and dimension values, in the order in which they were added
+  private final Map<FactKey, Map<String, BufferedMeasure>> bufferedFacts;
+  private final Deque<CompletableFuture<Void>> pendingBatches;
+  // sends the buffered facts once the oldest of them reaches the maximum age
+  private final AgedBufferFlusher agedFlusher;
+  private CompletableFuture<Void> lastBatch;
+  private long oldestFactTime;
 
   public RemoteCube(URL serviceURL, RESTClient restClient, ClientConfig clientConfig) {
-    this.serviceURL = serviceURL;
-    this.restClient = restClient;
-    this.clientConfig = clientConfig;
+    this(serviceURL, restClient, clientConfig,
+         Integer.parseInt(System.getProperty(BUFFER_SIZE, "1")),
+         Long.parseLong(System.getProperty(BUFFER_AGE_MS, "1000")),
+         Integer.parseInt(System.getProperty(MAX_PENDING_BATCHES, "4")),
+         Integer.parseInt(System.getProperty(QUERY_CACHE_SIZE, "0")));
+  }
+
+  /**
+   * @param maxBufferedFacts the maximum number of merged facts to buffer on the client. A value of 1 disables
+   *                         buffering, sending each fact as soon as it is added and waiting for the response.
+   * @param maxBufferAgeMillis the maximum age of the oldest buffered fact before the buffer is sent
+   * @param maxPendingBatches the maximum number of batches that are sent or waiting to be sent
+   * @param queryCacheSize the maximum number of query results to cache. A value of 0 disables the cache.
+   */
+  public RemoteCube(URL serviceURL, RESTClient restClient, ClientConfig clientConfig,
+                    int maxBufferedFacts, long maxBufferAgeMillis, int maxPendingBatches, int queryCacheSize) {
+    Preconditions.checkArgument(maxBufferedFacts > 0, "maxBufferedFacts must be positive.");
+    Preconditions.checkArgument(maxPendingBatches > 0, "maxPendingBatches must be positive.");
+    Preconditions.checkArgument(queryCacheSize >= 0, "queryCacheSize must not be negative.");
+    this.asyncCube = new AsyncRemoteCube(serviceURL, restClient, clientConfig);
+    this.maxBufferedFacts = maxBufferedFacts;
+    this.maxBufferAgeMillis = maxBufferAgeMillis;
+    this.maxPendingBatches = maxPendingBatches;
+    this.queryCache = queryCacheSize == 0 ? null : new CubeQueryCache(queryCacheSize);
+    this.deleteSliceSeconds = Long.parseLong(System.getProperty(DELETE_SLICE_SECONDS, "3600"));
+    this.bufferedFacts = new LinkedHashMap<>();
+    this.pendingBatches = new ArrayDeque<>();
+    this.lastBatch = CompletableFuture.completedFuture(null);
+    this.agedFlusher = new AgedBufferFlusher(this, "RemoteCube(" + serviceURL + ")",
+                                             maxBufferedFacts == 1 ? 0 : maxBufferAgeMillis, this::sendAgedFacts);
   }
 
   @Override
   public void add(CubeFact cubeFact) {
-    add(ImmutableList.of(cubeFact));
+    add(Collections.singletonList(cubeFact));
   }
 
   @Override
-  public void add(Collection<? extends CubeFact> collection) {
-    String json = GSON.toJson(collection);
-    doPost("add", json);
+  public synchronized void add(Collection<? extends CubeFact> collection) {
+    if (queryCache != null) {
+      queryCache.invalidate(collection);
+    }
+    if (maxBufferedFacts == 1) {
+      RemoteDatasetClient.getUnchecked(asyncCube.add(collection));
+      return;
+    }
+    for (CubeFact fact : collection) {
+      if (bufferedFacts.isEmpty()) {
+        // batches sent by the background flush are otherwise only removed by flush()
+        awaitPendingBatches();
+        oldestFactTime = System.currentTimeMillis();
+        agedFlusher.bufferStarted();
+      }
+      FactKey key = new FactKey(fact.getTimestamp(), fact.getDimensionValues());
+      Map<String, BufferedMeasure> measures = bufferedFacts.get(key);
+      if (measures == null) {
+        measures = new LinkedHashMap<>();
+        bufferedFacts.put(key, measures);
+      }
+      for (Measurement measurement : fact.getMeasurements()) {
+        BufferedMeasure measure = measures.get(measurement.getName());
+        if (measure == null) {
+          measures.put(measurement.getName(), new BufferedMeasure(measurement.getType(), measurement.getValue()));
+        } else {
+          measure.merge(measurement.getType(), measurement.getValue());
+        }
+      }
+      if (bufferedFacts.size() >= maxBufferedFacts
+        || System.currentTimeMillis() - oldestFactTime >= maxBufferAgeMillis) {
+        sendBufferedFacts();
+      }
+    }
   }
 
   @Override
-  public Collection<TimeSeries> query(CubeQuery cubeQuery) {
-    String json = GSON.toJson(cubeQuery);
-    return doPost("query", json, new TypeToken<Collection<TimeSeries>>() { }.getType());
+  public Collection<TimeSeries> query(final CubeQuery cubeQuery) {
+    flush();
+    if (queryCache == null) {
+      return RemoteDatasetClient.getUnchecked(asyncCube.query(cubeQuery));
+    }
+    return queryCache.get("query", cubeQuery, cubeQuery.getStartTs(), cubeQuery.getEndTs(),
+                          cubeQuery.getResolution(),
+                          () -> RemoteDatasetClient.getUnchecked(asyncCube.query(cubeQuery)));
+  }
+
+  /**
+   * Returns the time series of a query, in the order of the cube. The service runs the query once and streams the
+   * series as it serializes them, and the client decodes them one at a time as they are read, so that neither holds
+   * the serialized result in memory. The results are never cached. The iterator must be closed if it is not read to
+   * the end, to release its connection.
+   */
+  public CloseableIterator<TimeSeries> queryStreaming(CubeQuery cubeQuery) {
+    flush();
+    try {
+      return asyncCube.queryStream(cubeQuery);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   @Override
   public void delete(CubeDeleteQuery cubeDeleteQuery) {
-    throw new UnsupportedOperationException("Delete is not supported on Remote Cube.");
+    deleteInSlices(cubeDeleteQuery);
+  }
+
+  /**
+   * Deletes the facts of a query in slices of its time range, logging the progress after every request. The tag
+   * predicate of the query is evaluated on the dimension names of each aggregation of the cube, and only the
+   * aggregations that it accepts are deleted from.
+   *
+   * @return the total number of deleted and skipped slices
+   */
+  public DeleteResult deleteInSlices(CubeDeleteQuery cubeDeleteQuery) {
+    flush();
+    if (queryCache != null) {
+      queryCache.invalidate(cubeDeleteQuery.getStartTs(), cubeDeleteQuery.getEndTs());
+    }
+    List<List<String>> aggregations = getAcceptedAggregations(cubeDeleteQuery);
+    if (aggregations != null && aggregations.isEmpty()) {
+      LOG.info("The tag predicate of the delete query accepts no aggregation of the cube, nothing to delete.");
+      return new DeleteResult(0, 0, null);
+    }
+    int deletedSlices = 0;
+    int prunedSlices = 0;
+    Long resumeTs = cubeDeleteQuery.getStartTs();
+    while (resumeTs != null) {
+      DeleteResult result = RemoteDatasetClient.getUnchecked(asyncCube.delete(
+        new DeleteRequest(cubeDeleteQuery, aggregations, resumeTs, deleteSliceSeconds, DELETE_SLICES_PER_REQUEST)));
+      deletedSlices += result.getDeletedSlices();
+      prunedSlices += result.getPrunedSlices();
+      resumeTs = result.getResumeTs();
+      LOG.info("Deleted {} and skipped {} empty slices of {} seconds of the time range {} to {}, resuming at {}.",
+               deletedSlices, prunedSlices, deleteSliceSeconds, cubeDeleteQuery.getStartTs(),
+               cubeDeleteQuery.getEndTs(), resumeTs);
+    }
+    return new DeleteResult(deletedSlices, prunedSlices, null);
+  }
+
+  /**
+   * Returns the dimension names of the aggregations that the tag predicate of a delete query accepts, or
+   * {@code null} if it accepts all of them.
+   */
+  @Nullable
+  private List<List<String>> getAcceptedAggregations(CubeDeleteQuery cubeDeleteQuery) {
+    Predicate<List<String>> tagPredicate = cubeDeleteQuery.getTagPredicate();
+    if (tagPredicate == null) {
+      return null;
+    }
+    List<List<String>> aggregations = RemoteDatasetClient.getUnchecked(asyncCube.getAggregations());
+    List<List<String>> accepted = new ArrayList<>();
+    for (List<String> dimensionNames : aggregations) {
+      if (tagPredicate.test(dimensionNames)) {
+        accepted.add(dimensionNames);
+      }
+    }
+    return accepted.size() == aggregations.size() ? null : accepted;
   }
 
   @Override
-  public Collection<DimensionValue> findDimensionValues(CubeExploreQuery cubeExploreQuery) {
-    String json = GSON.toJson(cubeExploreQuery);
-    return doPost("searchDimensionValue", json, new TypeToken<Collection<DimensionValue>>() { }.getType());
+  public Collection<DimensionValue> findDimensionValues(final CubeExploreQuery cubeExploreQuery) {
+    flush();
+    if (queryCache == null) {
+      return RemoteDatasetClient.getUnchecked(asyncCube.findDimensionValues(cubeExploreQuery));
+    }
+    return queryCache.get("searchDimensionValue", cubeExploreQuery, cubeExploreQuery.getStartTs(),
+                          cubeExploreQuery.getEndTs(), cubeExploreQuery.getResolution(),
+                          () -> RemoteDatasetClient.getUnchecked(asyncCube.findDimensionValues(cubeExploreQuery)));
   }
 
   @Override
   public Collection<String> findMeasureNames(CubeExploreQuery cubeExploreQuery) {
-    String json = GSON.toJson(cubeExploreQuery);
-    return doPost("searchMeasure", json, new TypeToken<Collection<String>>() { }.getType());
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncCube.findMeasureNames(cubeExploreQuery));
+  }
+
+  /**
+   * Returns the hits and misses of the query cache. Only queries whose results can be cached are counted. Returns
+   * empty statistics if the cache is disabled.
+   */
+  public CacheStats getQueryCacheStats() {
+    return queryCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : queryCache.stats();
   }
 
   @Override
@@ -100,23 +298,138 @@ public class RemoteCube implements Cube {
     add(cubeFact);
   }
 
+  /**
+   * Sends the buffered facts, and waits for all batches to complete. Throws the failure of the first batch that
+   * failed, if any, with the failures of the other batches suppressed.
+   */
+  @Override
+  public synchronized void flush() {
+    if (!bufferedFacts.isEmpty()) {
+      sendBufferedFacts();
+    }
+    RuntimeException failure = null;
+    while (!pendingBatches.isEmpty()) {
+      try {
+        RemoteDatasetClient.getUnchecked(pendingBatches.poll());
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
   @Override
   public void close() throws IOException {
-    // nothing to do
+    flush();
   }
 
-  private <T> T doPost(String method, String json, Type typeOfT) {
-    HttpResponse response = doPost(method, json);
-    return GSON.fromJson(response.getResponseBodyAsString(), typeOfT);
+  /**
+   * Sends the buffered facts as one batch once the previous batch completed, without waiting for the response, and
+   * waits for the oldest batches if too many are pending.
+   */
+  private void sendBufferedFacts() {
+    enqueueBufferedFacts();
+    awaitPendingBatches();
   }
 
-  private HttpResponse doPost(String method, String json) {
-    try {
-      URL url = new URL(serviceURL, method);
-      return restClient.execute(HttpMethod.POST, url, json,
-                                ImmutableMap.of(), clientConfig.getAccessToken());
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
+  /**
+   * Sends the buffered facts on the background thread once the oldest of them reached the maximum age. Does not wait
+   * for the batch, so that its failure is thrown by the next operation on the caller's thread.
+   */
+  private void sendAgedFacts() {
+    if (!bufferedFacts.isEmpty()) {
+      enqueueBufferedFacts();
+    }
+  }
+
+  /**
+   * Sends the buffered facts as one batch once the previous batch completed, without waiting for the response.
+   */
+  private void enqueueBufferedFacts() {
+    agedFlusher.bufferFlushed();
+    final List<CubeFact> batch = new ArrayList<>(bufferedFacts.size());
+    for (Map.Entry<FactKey, Map<String, BufferedMeasure>> bufferedFact : bufferedFacts.entrySet()) {
+      batch.add(bufferedFact.getKey().toFact(bufferedFact.getValue()));
+    }
+    bufferedFacts.clear();
+    // sent regardless of whether the previous batch failed, since its failure is reported on its own
+    lastBatch = lastBatch.handle((result, failure) -> null).thenCompose(ignored -> asyncCube.add(batch));
+    pendingBatches.add(lastBatch);
+  }
+
+  /**
+   * Waits for the oldest batches if too many are pending, and removes the completed ones.
+   */
+  private void awaitPendingBatches() {
+    // completed batches are removed, so that their failures are reported as early as possible
+    while (!pendingBatches.isEmpty()
+      && (pendingBatches.size() > maxPendingBatches || pendingBatches.peek().isDone())) {
+      RemoteDatasetClient.getUnchecked(pendingBatches.poll());
+    }
+  }
+
+  /**
+   * Timestamp and dimension values of a fact, which identify the facts that can be merged.
+   */
+  private static final class FactKey {
+    private final long timestamp;
+    private final Map<String, String> dimensionValues;
+
+    FactKey(long timestamp, Map<String, String> dimensionValues) {
+      this.timestamp = timestamp;
+      this.dimensionValues = new TreeMap<>(dimensionValues);
+    }
+
+    CubeFact toFact(Map<String, BufferedMeasure> measures) {
+      CubeFact fact = new CubeFact(timestamp);
+      for (Map.Entry<String, String> dimensionValue : dimensionValues.entrySet()) {
+        fact.addDimensionValue(dimensionValue.getKey(), dimensionValue.getValue());
+      }
+      for (Map.Entry<String, BufferedMeasure> measure : measures.entrySet()) {
+        fact.addMeasurement(measure.getKey(), measure.getValue().type, measure.getValue().value);
+      }
+      return fact;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FactKey that = (FactKey) o;
+      return timestamp == that.timestamp && dimensionValues.equals(that.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(timestamp, dimensionValues);
+    }
+  }
+
+  /**
+   * Value of a measure, merged over the buffered facts.
+   */
+  private static final class BufferedMeasure {
+    private MeasureType type;
+    private long value;
+
+    BufferedMeasure(MeasureType type, long value) {
+      this.type = type;
+      this.value = value;
+    }
+
+    void merge(MeasureType type, long value) {
+      this.value = this.type == MeasureType.COUNTER && type == MeasureType.COUNTER ? this.value + value : value;
+      this.type = type;
     }
   }
 }
@@ -19,11 +19,22 @@ package io.cdap.cdap.remote.dataset.kvtable;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
 import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
 import io.cdap.cdap.api.service.http.HttpServiceRequest;
 import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.SplitBoundaries;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+import io.cdap.cdap.remote.dataset.codec.HandlerCodec;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -33,63 +44,193 @@ import javax.ws.rs.Path;
  */
 public abstract class AbstractKVTableHttpHandler extends AbstractHttpServiceHandler {
   private static final Gson GSON = new GsonBuilder().enableComplexMapKeySerialization().create();
+  private static final HandlerCodec CODEC = new HandlerCodec(new JsonCodec(GSON), KVTableFormats.createBinaryCodec());
+  // upper bound on the size of the key/value pairs returned in one page of a scan or read, regardless of the limit
+  private static final long MAX_PAGE_BYTES = 4 * 1024 * 1024;
+  // number of keys read from the table at once by readPage, between checks of the page size
+  private static final int READ_BATCH_SIZE = 100;
 
   /**
    * @return {@link KeyValueTable} dataset.
    */
   protected abstract KeyValueTable getKVTable();
 
+  /**
+   * @return the {@link KeyValueTable} dataset that a request operates on, which is {@link #getKVTable()} by default
+   */
+  protected KeyValueTable getKVTable(HttpServiceRequest request) {
+    return getKVTable();
+  }
+
   @Path("read")
   @POST
   public void read(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    byte[] key = deser(request, byte[].class);
-    byte[] read = getKVTable().read(key);
-    responder.sendJson(new Result(read));
+    byte[] key = CODEC.decode(request, byte[].class);
+    byte[] read = getKVTable(request).read(key);
+    CODEC.respond(request, responder, new Result(read), Result.class);
   }
 
   @Path("readAll")
   @POST
   public void readAll(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    byte[][] keys = deser(request, byte[][].class);
-    Map<byte[], byte[]> values = getKVTable().readAll(keys);
-    responder.sendJson(200, values, values.getClass(), GSON);
+    byte[][] keys = CODEC.decode(request, byte[][].class);
+    Map<byte[], byte[]> values = getKVTable(request).readAll(keys);
+    CODEC.respond(request, responder, values, KVTableFormats.VALUES_TYPE);
+  }
+
+  /**
+   * Reads the values of the given keys, in batches of {@link #READ_BATCH_SIZE} keys, until all keys were read or the
+   * values read hold {@link #MAX_PAGE_BYTES}. Responds with the key/value pairs of the keys that exist, and the index
+   * of the first key that was not read, if any, as the resume token.
+   */
+  @Path("readPage")
+  @POST
+  public void readPage(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    byte[][] keys = CODEC.decode(request, byte[][].class);
+    KeyValueTable kvTable = getKVTable(request);
+    List<KeyValue<byte[], byte[]>> keyValues = new ArrayList<>(keys.length);
+    byte[] resumeToken = null;
+    long pageBytes = 0;
+    for (int start = 0; start < keys.length; start += READ_BATCH_SIZE) {
+      if (pageBytes >= MAX_PAGE_BYTES) {
+        resumeToken = Bytes.toBytes(start);
+        break;
+      }
+      byte[][] batch = Arrays.copyOfRange(keys, start, Math.min(keys.length, start + READ_BATCH_SIZE));
+      for (Map.Entry<byte[], byte[]> value : kvTable.readAll(batch).entrySet()) {
+        if (value.getValue() != null) {
+          keyValues.add(new KeyValue<>(value.getKey(), value.getValue()));
+          pageBytes += value.getKey().length + value.getValue().length;
+        }
+      }
+    }
+    CODEC.respond(request, responder, new Page<>(keyValues, resumeToken), KVTableFormats.SCAN_PAGE_TYPE);
+  }
+
+  /**
+   * Returns one page of a scan. A page holds at most the requested number of key/value pairs, and stops early once it
+   * holds {@link #MAX_PAGE_BYTES}. The response carries the key to resume the scan from, if there are more.
+   */
+  @Path("scan")
+  @POST
+  public void scan(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    ScanRequest scanRequest = CODEC.decode(request, ScanRequest.class);
+    List<KeyValue<byte[], byte[]>> keyValues = new ArrayList<>();
+    byte[] resumeToken = null;
+    long pageBytes = 0;
+    try (CloseableIterator<KeyValue<byte[], byte[]>> scanner =
+           getKVTable(request).scan(scanRequest.getStartKey(), scanRequest.getStopKey())) {
+      while (scanner.hasNext()) {
+        KeyValue<byte[], byte[]> keyValue = scanner.next();
+        if (keyValues.size() >= scanRequest.getLimit() || pageBytes >= MAX_PAGE_BYTES) {
+          resumeToken = keyValue.getKey();
+          break;
+        }
+        keyValues.add(keyValue);
+        pageBytes += keyValue.getKey().length + keyValue.getValue().length;
+      }
+    }
+    CODEC.respond(request, responder, new Page<>(keyValues, resumeToken), KVTableFormats.SCAN_PAGE_TYPE);
+  }
+
+  /**
+   * Enumerates the splits of the table, responding with the key at which each split starts.
+   */
+  @Path("splits")
+  @POST
+  public void splits(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    SplitsRequest splitsRequest = CODEC.decode(request, SplitsRequest.class);
+    KeyValueTable kvTable = getKVTable(request);
+    List<Split> splits = kvTable.getSplits(splitsRequest.getNumSplits(), splitsRequest.getStart(),
+                                           splitsRequest.getStop());
+    List<byte[]> startKeys = SplitBoundaries.getStartKeys(kvTable, splits, splitsRequest.getStart());
+    CODEC.respond(request, responder, startKeys.toArray(new byte[startKeys.size()][]), byte[][].class);
   }
 
   @Path("incrementAndGet")
   @POST
   public void incrementAndGet(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    IncrementRequest increment = deser(request, IncrementRequest.class);
-    long value = getKVTable().incrementAndGet(increment.getKey(), increment.getAmount());
-    responder.sendJson(value);
+    IncrementRequest increment = CODEC.decode(request, IncrementRequest.class);
+    long value = getKVTable(request).incrementAndGet(increment.getKey(), increment.getAmount());
+    CODEC.respond(request, responder, value, Long.class);
+  }
+
+  /**
+   * Increments without reading the result back, so that readless increments can be used.
+   */
+  @Path("increment")
+  @POST
+  public void increment(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    IncrementRequest increment = CODEC.decode(request, IncrementRequest.class);
+    getKVTable(request).increment(increment.getKey(), increment.getAmount());
+    responder.sendStatus(200);
   }
 
   @Path("write")
   @POST
   public void write(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    WriteRequest write = deser(request, WriteRequest.class);
-    getKVTable().write(write.getKey(), write.getValue());
+    WriteRequest write = CODEC.decode(request, WriteRequest.class);
+    getKVTable(request).write(write.getKey(), write.getValue());
     responder.sendStatus(200);
   }
 
   @Path("delete")
   @POST
   public void delete(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    byte[] key = deser(request, byte[].class);
-    getKVTable().delete(key);
+    byte[] key = CODEC.decode(request, byte[].class);
+    getKVTable(request).delete(key);
+    responder.sendStatus(200);
+  }
+
+  /**
+   * Applies the writes in order, in a single transaction.
+   */
+  @Path("writeAll")
+  @POST
+  public void writeAll(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    WriteRequest[] writes = CODEC.decode(request, WriteRequest[].class);
+    KeyValueTable kvTable = getKVTable(request);
+    for (WriteRequest write : writes) {
+      kvTable.write(write.getKey(), write.getValue());
+    }
+    responder.sendStatus(200);
+  }
+
+  /**
+   * Deletes the keys in a single transaction.
+   */
+  @Path("deleteAll")
+  @POST
+  public void deleteAll(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    byte[][] keys = CODEC.decode(request, byte[][].class);
+    KeyValueTable kvTable = getKVTable(request);
+    for (byte[] key : keys) {
+      kvTable.delete(key);
+    }
+    responder.sendStatus(200);
+  }
+
+  /**
+   * Applies the increments in a single transaction, without reading the results back.
+   */
+  @Path("incrementAll")
+  @POST
+  public void incrementAll(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    IncrementRequest[] increments = CODEC.decode(request, IncrementRequest[].class);
+    KeyValueTable kvTable = getKVTable(request);
+    for (IncrementRequest increment : increments) {
+      kvTable.increment(increment.getKey(), increment.getAmount());
+    }
     responder.sendStatus(200);
   }
 
   @Path("compareAndSwap")
   @POST
   public void compareAndSwap(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    CompareAndSwapRequest compareAndSwapRequest = deser(request, CompareAndSwapRequest.class);
-    boolean succeeded = getKVTable().compareAndSwap(compareAndSwapRequest.getRow(),
+    CompareAndSwapRequest compareAndSwapRequest = CODEC.decode(request, CompareAndSwapRequest.class);
+    boolean succeeded = getKVTable(request).compareAndSwap(compareAndSwapRequest.getRow(),
                                                     compareAndSwapRequest.getOldValue(),
                                                     compareAndSwapRequest.getNewValue());
-    responder.sendJson(succeeded);
-  }
-
-  private <T> T deser(HttpServiceRequest request, Class<T> clz) {
-    return GSON.fromJson(Bytes.toString(request.getContent()), clz);
+    CODEC.respond(request, responder, succeeded, Boolean.class);
   }
 }
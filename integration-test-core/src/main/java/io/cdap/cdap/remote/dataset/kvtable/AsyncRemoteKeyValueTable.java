@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.kvtable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.client.config.ClientConfig;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import io.cdap.cdap.remote.dataset.SortedBytesMap;
+import io.cdap.cdap.remote.dataset.SortedBytesMapDeserializer;
+import io.cdap.cdap.remote.dataset.SplitBoundaries;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
+import io.cdap.cdap.remote.dataset.codec.BinaryCodec;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+
+/**
+ * Asynchronous client of a KeyValueTable dataset service. Every operation is sent as soon as it is called, and returns
+ * a {@link CompletableFuture} that completes with the response, so that many operations can be in flight at once.
+ * Operations which are in flight at the same time are not guaranteed to be applied in the order they were called.
+ *
+ * @see RemoteDatasetClient for the limit on the number of operations in flight
+ */
+public class AsyncRemoteKeyValueTable {
+
+  private static final Gson GSON = new GsonBuilder()
+    .enableComplexMapKeySerialization()
+    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
+    .registerTypeAdapter(KVTableFormats.VALUES_TYPE, new SortedBytesMapDeserializer())
+    .create();
+  private static final JsonCodec JSON_CODEC = new JsonCodec(GSON);
+  private static final BinaryCodec BINARY_CODEC = KVTableFormats.createBinaryCodec();
+
+  private final RemoteDatasetClient client;
+
+  public AsyncRemoteKeyValueTable(URL serviceURL, RESTClient restClient, ClientConfig clientConfig) {
+    this.client = new RemoteDatasetClient(serviceURL, restClient, clientConfig, JSON_CODEC, BINARY_CODEC);
+  }
+
+  /**
+   * Reads the value of a key, completing with {@code null} if the key does not exist.
+   */
+  public CompletableFuture<byte[]> read(byte[] key) {
+    return client.<Result>executeAsync("read", key, byte[].class, Result.class).thenApply(Result::getResult);
+  }
+
+  /**
+   * Reads the values of the given keys. Keys which do not exist are absent from the result.
+   *
+   * @see #readAll(byte[][], int)
+   */
+  public CompletableFuture<Map<byte[], byte[]>> readAll(byte[][] keys) {
+    return readAll(keys, Math.max(1, keys.length));
+  }
+
+  /**
+   * Reads the values of the given keys, requesting them in chunks of at most {@code chunkSize} keys which are all in
+   * flight at once. The service reads a chunk until its response reaches a size limit, and the rest of the chunk is
+   * then requested again. Keys which do not exist are absent from the result.
+   */
+  public CompletableFuture<Map<byte[], byte[]>> readAll(byte[][] keys, int chunkSize) {
+    byte[][] allKeys = keys.clone();
+    // sorted and without duplicates, so that the values of the chunks can be appended to a sorted map
+    Arrays.sort(allKeys, Bytes.BYTES_COMPARATOR);
+    int uniqueKeys = 0;
+    for (byte[] key : allKeys) {
+      if (uniqueKeys == 0 || Bytes.compareTo(allKeys[uniqueKeys - 1], key) != 0) {
+        allKeys[uniqueKeys++] = key;
+      }
+    }
+    final byte[][] sortedKeys = Arrays.copyOf(allKeys, uniqueKeys);
+    final List<CompletableFuture<List<KeyValue<byte[], byte[]>>>> chunks = new ArrayList<>();
+    for (int start = 0; start < sortedKeys.length; start += chunkSize) {
+      byte[][] chunk = Arrays.copyOfRange(sortedKeys, start, Math.min(sortedKeys.length, start + chunkSize));
+      chunks.add(readChunk(chunk, new ArrayList<KeyValue<byte[], byte[]>>(chunk.length)));
+    }
+    return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[chunks.size()])).thenApply(ignored -> {
+      // the chunks are in the order of their keys, so this only appends
+      SortedBytesMap values = new SortedBytesMap(sortedKeys.length);
+      for (CompletableFuture<List<KeyValue<byte[], byte[]>>> chunk : chunks) {
+        for (KeyValue<byte[], byte[]> keyValue : chunk.join()) {
+          values.put(keyValue.getKey(), keyValue.getValue());
+        }
+      }
+      values.trimToSize();
+      return values;
+    });
+  }
+
+  /**
+   * Reads a sorted chunk of keys, adding the key/value pairs read to the given list, and requests the rest of the
+   * chunk again as long as the service stops before its end.
+   */
+  private CompletableFuture<List<KeyValue<byte[], byte[]>>> readChunk(final byte[][] keys,
+                                                                     final List<KeyValue<byte[], byte[]>> read) {
+    return client.<Page<KeyValue<byte[], byte[]>>>executeAsync("readPage", keys, byte[][].class,
+                                                               KVTableFormats.SCAN_PAGE_TYPE)
+      .thenCompose(page -> {
+        read.addAll(page.getItems());
+        if (page.getResumeToken() == null) {
+          return CompletableFuture.completedFuture(read);
+        }
+        // the service resumes at the index of the first key that it did not read
+        int resume = Bytes.toInt(page.getResumeToken());
+        if (resume <= 0 || resume >= keys.length) {
+          throw new IllegalStateException(String.format("Invalid index %d to resume reading %d keys from",
+                                                        resume, keys.length));
+        }
+        return readChunk(Arrays.copyOfRange(keys, resume, keys.length), read);
+      });
+  }
+
+  /**
+   * Fetches one page of at most {@code limit} key/value pairs of a scan.
+   */
+  public CompletableFuture<Page<KeyValue<byte[], byte[]>>> scan(@Nullable byte[] startKey, @Nullable byte[] stopKey,
+                                                               int limit) {
+    ScanRequest scanRequest = new ScanRequest(startKey, stopKey, limit);
+    return client.executeAsync("scan", scanRequest, ScanRequest.class, KVTableFormats.SCAN_PAGE_TYPE);
+  }
+
+  /**
+   * Enumerates the splits of the table between the given keys, as {@link io.cdap.cdap.remote.dataset.RowRangeSplit}s.
+   *
+   * @param numSplits the desired number of splits, or a non-positive number to let the table decide
+   */
+  public CompletableFuture<List<Split>> getSplits(int numSplits, @Nullable byte[] start, @Nullable final byte[] stop) {
+    SplitsRequest splitsRequest = new SplitsRequest(numSplits, start, stop);
+    return client.<byte[][]>executeAsync("splits", splitsRequest, SplitsRequest.class, byte[][].class)
+      .thenApply(startKeys -> SplitBoundaries.toSplits(startKeys, stop));
+  }
+
+  public CompletableFuture<Void> write(byte[] key, byte[] value) {
+    return client.executeAsync("write", new WriteRequest(key, value), WriteRequest.class);
+  }
+
+  public CompletableFuture<Void> delete(byte[] key) {
+    return client.executeAsync("delete", key, byte[].class);
+  }
+
+  /**
+   * Writes all key/value pairs in a single request and a single transaction, in the order of the list.
+   */
+  public CompletableFuture<Void> writeAll(List<KeyValue<byte[], byte[]>> keyValues) {
+    WriteRequest[] writes = new WriteRequest[keyValues.size()];
+    for (int i = 0; i < writes.length; i++) {
+      writes[i] = new WriteRequest(keyValues.get(i).getKey(), keyValues.get(i).getValue());
+    }
+    return client.executeAsync("writeAll", writes, WriteRequest[].class);
+  }
+
+  /**
+   * Deletes all keys in a single request and a single transaction.
+   */
+  public CompletableFuture<Void> deleteAll(byte[][] keys) {
+    return client.executeAsync("deleteAll", keys, byte[][].class);
+  }
+
+  /**
+   * Increments all keys by their amounts in a single request and a single transaction.
+   */
+  public CompletableFuture<Void> incrementAll(Map<byte[], Long> increments) {
+    IncrementRequest[] incrementRequests = new IncrementRequest[increments.size()];
+    int i = 0;
+    for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
+      incrementRequests[i++] = new IncrementRequest(increment.getKey(), increment.getValue());
+    }
+    return client.executeAsync("incrementAll", incrementRequests, IncrementRequest[].class);
+  }
+
+  public CompletableFuture<Void> increment(byte[] key, long amount) {
+    return client.executeAsync("increment", new IncrementRequest(key, amount), IncrementRequest.class);
+  }
+
+  public CompletableFuture<Long> incrementAndGet(byte[] key, long amount) {
+    return client.executeAsync("incrementAndGet", new IncrementRequest(key, amount), IncrementRequest.class,
+                               Long.class);
+  }
+
+  public CompletableFuture<Boolean> compareAndSwap(byte[] key, @Nullable byte[] oldValue, @Nullable byte[] newValue) {
+    CompareAndSwapRequest compareAndSwap = new CompareAndSwapRequest(key, oldValue, newValue);
+    return client.executeAsync("compareAndSwap", compareAndSwap, CompareAndSwapRequest.class, Boolean.class);
+  }
+}
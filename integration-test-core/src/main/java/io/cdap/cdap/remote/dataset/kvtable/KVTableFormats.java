@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.kvtable;
+
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+import io.cdap.cdap.remote.dataset.codec.BinaryCodec;
+import io.cdap.cdap.remote.dataset.codec.BinaryFormat;
+import io.cdap.cdap.remote.dataset.codec.BinaryFormats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Types and {@link BinaryFormat}s of the request and response bodies of the {@link AbstractKVTableHttpHandler}.
+ */
+public final class KVTableFormats {
+
+  public static final Type VALUES_TYPE = new TypeToken<Map<byte[], byte[]>>() { }.getType();
+  public static final Type SCAN_PAGE_TYPE = new TypeToken<Page<KeyValue<byte[], byte[]>>>() { }.getType();
+
+  private static final BinaryFormat<Result> RESULT = new BinaryFormat<Result>() {
+    @Override
+    public void write(DataOutput out, Result value) throws IOException {
+      BinaryFormats.writeBytes(out, value.getResult());
+    }
+
+    @Override
+    public Result read(DataInput in) throws IOException {
+      return new Result(BinaryFormats.readBytes(in));
+    }
+  };
+
+  private static final BinaryFormat<WriteRequest> WRITE_REQUEST = new BinaryFormat<WriteRequest>() {
+    @Override
+    public void write(DataOutput out, WriteRequest value) throws IOException {
+      BinaryFormats.writeBytes(out, value.getKey());
+      BinaryFormats.writeBytes(out, value.getValue());
+    }
+
+    @Override
+    public WriteRequest read(DataInput in) throws IOException {
+      return new WriteRequest(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in));
+    }
+  };
+
+  private static final BinaryFormat<IncrementRequest> INCREMENT_REQUEST = new BinaryFormat<IncrementRequest>() {
+    @Override
+    public void write(DataOutput out, IncrementRequest value) throws IOException {
+      BinaryFormats.writeBytes(out, value.getKey());
+      out.writeLong(value.getAmount());
+    }
+
+    @Override
+    public IncrementRequest read(DataInput in) throws IOException {
+      return new IncrementRequest(BinaryFormats.readBytes(in), in.readLong());
+    }
+  };
+
+  private static final BinaryFormat<CompareAndSwapRequest> COMPARE_AND_SWAP_REQUEST =
+    new BinaryFormat<CompareAndSwapRequest>() {
+      @Override
+      public void write(DataOutput out, CompareAndSwapRequest value) throws IOException {
+        BinaryFormats.writeBytes(out, value.getRow());
+        BinaryFormats.writeBytes(out, value.getOldValue());
+        BinaryFormats.writeBytes(out, value.getNewValue());
+      }
+
+      @Override
+      public CompareAndSwapRequest read(DataInput in) throws IOException {
+        return new CompareAndSwapRequest(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in),
+                                         BinaryFormats.readBytes(in));
+      }
+    };
+
+  private static final BinaryFormat<ScanRequest> SCAN_REQUEST = new BinaryFormat<ScanRequest>() {
+    @Override
+    public void write(DataOutput out, ScanRequest value) throws IOException {
+      BinaryFormats.writeBytes(out, value.getStartKey());
+      BinaryFormats.writeBytes(out, value.getStopKey());
+      out.writeInt(value.getLimit());
+    }
+
+    @Override
+    public ScanRequest read(DataInput in) throws IOException {
+      return new ScanRequest(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in), in.readInt());
+    }
+  };
+
+  private KVTableFormats() { }
+
+  /**
+   * @return a {@link BinaryCodec} for all types exchanged with the {@link AbstractKVTableHttpHandler}
+   */
+  public static BinaryCodec createBinaryCodec() {
+    return new BinaryCodec()
+      .register(byte[].class, BinaryFormats.BYTES)
+      .register(byte[][].class, BinaryFormats.BYTES_ARRAY)
+      .register(VALUES_TYPE, BinaryFormats.BYTES_MAP)
+      .register(Long.class, BinaryFormats.LONG)
+      .register(Boolean.class, BinaryFormats.BOOLEAN)
+      .register(Result.class, RESULT)
+      .register(WriteRequest.class, WRITE_REQUEST)
+      .register(IncrementRequest.class, INCREMENT_REQUEST)
+      .register(WriteRequest[].class, BinaryFormats.arrayOf(WRITE_REQUEST, WriteRequest[]::new))
+      .register(IncrementRequest[].class, BinaryFormats.arrayOf(INCREMENT_REQUEST, IncrementRequest[]::new))
+      .register(CompareAndSwapRequest.class, COMPARE_AND_SWAP_REQUEST)
+      .register(ScanRequest.class, SCAN_REQUEST)
+      .register(SCAN_PAGE_TYPE, BinaryFormats.pageOf(BinaryFormats.KEY_VALUE))
+      .register(SplitsRequest.class, BinaryFormats.SPLITS_REQUEST);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.kvtable;
+
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.service.http.HttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.remote.dataset.AbstractMultiDatasetApp;
+
+import javax.ws.rs.Path;
+
+/**
+ * Application which allows reading or writing to any {@link KeyValueTable} of its namespace.
+ */
+public class MultiKVTableDatasetApp extends AbstractMultiDatasetApp {
+
+  @Override
+  protected HttpServiceHandler getMultiDatasetHttpHandler() {
+    return new MultiKVTableHttpHandler();
+  }
+
+  /**
+   * HttpHandler to make API calls on the KeyValueTable named by the path of each request.
+   */
+  @Path(DATASET_PATH)
+  public static class MultiKVTableHttpHandler extends AbstractKVTableHttpHandler {
+
+    @Override
+    protected KeyValueTable getKVTable() {
+      throw new UnsupportedOperationException("The KeyValueTable is named by the path of each request.");
+    }
+
+    @Override
+    protected KeyValueTable getKVTable(HttpServiceRequest request) {
+      return getContext().getDataset(getDatasetName(request));
+    }
+  }
+}
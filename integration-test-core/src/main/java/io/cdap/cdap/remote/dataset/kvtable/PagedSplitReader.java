@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.kvtable;
+
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.data.batch.SplitReader;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.remote.dataset.PrefetchingPageIterator;
+import io.cdap.cdap.remote.dataset.RowRangeSplit;
+
+/**
+ * {@link SplitReader} which reads a {@link RowRangeSplit} of a {@link RemoteKeyValueTable} one page at a time.
+ */
+final class PagedSplitReader extends SplitReader<byte[], byte[]> {
+
+  private final RemoteKeyValueTable table;
+  private PrefetchingPageIterator<KeyValue<byte[], byte[]>> keyValues;
+  private KeyValue<byte[], byte[]> current;
+
+  PagedSplitReader(RemoteKeyValueTable table) {
+    this.table = table;
+  }
+
+  @Override
+  public void initialize(Split split) {
+    if (!(split instanceof RowRangeSplit)) {
+      throw new IllegalArgumentException("Split must be obtained from the remote KeyValueTable, but is " + split);
+    }
+    RowRangeSplit keyRange = (RowRangeSplit) split;
+    keyValues = table.scanPages(keyRange.getStart(), keyRange.getStop());
+  }
+
+  @Override
+  public boolean nextKeyValue() {
+    if (!keyValues.hasNext()) {
+      return false;
+    }
+    current = keyValues.next();
+    return true;
+  }
+
+  @Override
+  public byte[] getCurrentKey() {
+    return current.getKey();
+  }
+
+  @Override
+  public byte[] getCurrentValue() {
+    return current.getValue();
+  }
+
+  @Override
+  public void close() {
+    if (keyValues != null) {
+      keyValues.close();
+    }
+  }
+}
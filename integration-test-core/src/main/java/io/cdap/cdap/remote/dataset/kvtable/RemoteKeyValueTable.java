@@ -16,11 +16,6 @@
 
 package io.cdap.cdap.remote.dataset.kvtable;
 
-import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.batch.RecordScanner;
 import io.cdap.cdap.api.data.batch.Split;
@@ -31,37 +26,76 @@ import io.cdap.cdap.api.dataset.lib.KeyValueTable;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.client.config.ClientConfig;
 import io.cdap.cdap.client.util.RESTClient;
-import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
-import io.cdap.common.http.HttpMethod;
-import io.cdap.common.http.HttpResponse;
+import io.cdap.cdap.remote.dataset.AgedBufferFlusher;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.PrefetchingPageIterator;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nullable;
 
 /**
  * A key/value map implementation on top of {@link Table} supporting read, write and delete operations.
+ *
+ * Writes and increments are buffered on the client, keeping only the last write of a key and combining repeated
+ * increments of the same key into one. They are sent once {@code remote.kvtable.buffer.size} keys have pending
+ * writes or increments, once the oldest of them is older than {@code remote.kvtable.buffer.age.ms}, or when
+ * {@link #flush()} is called. The age is enforced by a flush scheduled on a background thread, so pending writes and
+ * increments are sent even if no further operation is made. Pending writes and increments are sent before any other
+ * operation, so that operations are applied in the order in which they were made. {@link #writeAll},
+ * {@link #deleteAll} and {@link #incrementAll} send many operations in a single request instead.
+ *
+ * Scans are read one page of {@code remote.kvtable.scan.page.size} key/value pairs at a time, prefetching the next
+ * page while the current one is consumed. Splits are enumerated by the service, and each split is read through such
+ * a scan over its range of keys. {@link #readAll} requests the keys in chunks of {@code remote.kvtable.read.chunk.size}
+ * keys, all in flight at once.
+ *
+ * All operations are sent through an {@link AsyncRemoteKeyValueTable}, waiting for their completion.
  */
-public class RemoteKeyValueTable extends KeyValueTable {
+public class RemoteKeyValueTable extends KeyValueTable implements Flushable {
 
-  private static final Gson GSON = new GsonBuilder()
-    .enableComplexMapKeySerialization()
-    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
-    .create();
+  // maximum number of keys with pending writes or increments before they are sent to the service
+  public static final String BUFFER_SIZE = "remote.kvtable.buffer.size";
+  // maximum amount of time in milliseconds that a write or increment is buffered for
+  public static final String BUFFER_AGE_MS = "remote.kvtable.buffer.age.ms";
+  // number of key/value pairs to fetch per request when reading a split
+  public static final String SCAN_PAGE_SIZE = "remote.kvtable.scan.page.size";
+  // number of keys to request at once when reading many keys
+  public static final String READ_CHUNK_SIZE = "remote.kvtable.read.chunk.size";
 
-  private final URL serviceURL;
-  private final RESTClient restClient;
-  private final ClientConfig clientConfig;
+  private final AsyncRemoteKeyValueTable asyncTable;
+  private final int maxBufferedKeys;
+  private final long maxBufferAgeMillis;
+  private final int scanPageSize;
+  private final int readChunkSize;
+  // writes which have not been sent yet, by key. A key never has both a pending write and a pending increment.
+  private final Map<byte[], byte[]> bufferedWrites;
+  // increments which have not been sent yet, summed up by key
+  private final Map<byte[], Long> bufferedIncrements;
+  // sends the pending writes and increments once the oldest of them reaches the maximum age
+  private final AgedBufferFlusher agedFlusher;
+  private long oldestBufferedTime;
 
   public RemoteKeyValueTable(URL serviceURL, RESTClient restClient, ClientConfig clientConfig) {
     // fine to pass null, since we never use those fields
     super(null, null);
-    this.serviceURL = serviceURL;
-    this.restClient = restClient;
-    this.clientConfig = clientConfig;
+    this.asyncTable = new AsyncRemoteKeyValueTable(serviceURL, restClient, clientConfig);
+    this.maxBufferedKeys = Integer.parseInt(System.getProperty(BUFFER_SIZE, "1000"));
+    this.maxBufferAgeMillis = Long.parseLong(System.getProperty(BUFFER_AGE_MS, "1000"));
+    this.scanPageSize = Integer.parseInt(System.getProperty(SCAN_PAGE_SIZE, "1000"));
+    this.readChunkSize = Integer.parseInt(System.getProperty(READ_CHUNK_SIZE, "1000"));
+    this.bufferedWrites = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    this.bufferedIncrements = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    this.agedFlusher = new AgedBufferFlusher(this, "RemoteKeyValueTable(" + serviceURL + ")",
+                                             maxBufferAgeMillis, this::flush);
   }
 
   @Nullable
@@ -73,27 +107,34 @@ public class RemoteKeyValueTable extends KeyValueTable {
   @Nullable
   @Override
   public byte[] read(byte[] key) {
-    String json = GSON.toJson(key);
-    return doPost("read", json, Result.class).getResult();
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.read(key));
   }
 
   @Override
   public Map<byte[], byte[]> readAll(byte[][] keys) {
-    String json = GSON.toJson(keys);
-    HttpResponse response = doPost("readAll", json);
-    return GSON.fromJson(response.getResponseBodyAsString(), new TypeToken<Map<byte[], byte[]>>() { }.getType());
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.readAll(keys, readChunkSize));
   }
 
   @Override
   public long incrementAndGet(byte[] key, long value) {
-    String json = GSON.toJson(new IncrementRequest(key, value));
-    return doPost("incrementAndGet", json, Long.class);
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.incrementAndGet(key, value));
   }
 
   @Override
-  public void write(byte[] key, byte[] value) {
-    String json = GSON.toJson(new WriteRequest(key, value));
-    doPost("write", json);
+  public synchronized void write(byte[] key, byte[] value) {
+    if (bufferedIncrements.containsKey(key)) {
+      // the increment has to be applied before the write
+      flush();
+    }
+    if (isBufferEmpty()) {
+      oldestBufferedTime = System.currentTimeMillis();
+      agedFlusher.bufferStarted();
+    }
+    bufferedWrites.put(key, value);
+    flushIfFull();
   }
 
   @Override
@@ -112,21 +153,128 @@ public class RemoteKeyValueTable extends KeyValueTable {
   }
 
   @Override
-  public void increment(byte[] key, long amount) {
-    // ignore performance
-    incrementAndGet(key, amount);
+  public synchronized void increment(byte[] key, long amount) {
+    if (bufferedWrites.containsKey(key)) {
+      // the write has to be applied before the increment
+      flush();
+    }
+    if (isBufferEmpty()) {
+      oldestBufferedTime = System.currentTimeMillis();
+      agedFlusher.bufferStarted();
+    }
+    Long current = bufferedIncrements.get(key);
+    bufferedIncrements.put(key, current == null ? amount : current + amount);
+    flushIfFull();
   }
 
   @Override
   public void delete(byte[] key) {
-    String json = GSON.toJson(key);
-    doPost("delete", json);
+    flush();
+    RemoteDatasetClient.getUnchecked(asyncTable.delete(key));
   }
 
   @Override
   public boolean compareAndSwap(byte[] key, byte[] oldValue, byte[] newValue) {
-    String json = GSON.toJson(new CompareAndSwapRequest(key, oldValue, newValue));
-    return doPost("compareAndSwap", json, Boolean.class);
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.compareAndSwap(key, oldValue, newValue));
+  }
+
+  /**
+   * Writes all key/value pairs in a single request, in the order of the list.
+   */
+  public void writeAll(List<KeyValue<byte[], byte[]>> keyValues) {
+    flush();
+    RemoteDatasetClient.getUnchecked(asyncTable.writeAll(keyValues));
+  }
+
+  /**
+   * Deletes all keys in a single request.
+   */
+  public void deleteAll(byte[][] keys) {
+    flush();
+    RemoteDatasetClient.getUnchecked(asyncTable.deleteAll(keys));
+  }
+
+  /**
+   * Increments all keys by their amounts in a single request.
+   */
+  public void incrementAll(Map<byte[], Long> increments) {
+    flush();
+    RemoteDatasetClient.getUnchecked(asyncTable.incrementAll(increments));
+  }
+
+  /**
+   * Sends all pending writes and increments to the service, each in a single request. No key has both, so the two
+   * requests are sent without waiting for each other.
+   */
+  @Override
+  public synchronized void flush() {
+    agedFlusher.bufferFlushed();
+    CompletableFuture<Void> writes = null;
+    if (!bufferedWrites.isEmpty()) {
+      List<KeyValue<byte[], byte[]>> keyValues = new ArrayList<>(bufferedWrites.size());
+      for (Map.Entry<byte[], byte[]> write : bufferedWrites.entrySet()) {
+        keyValues.add(new KeyValue<>(write.getKey(), write.getValue()));
+      }
+      writes = asyncTable.writeAll(keyValues);
+    }
+    CompletableFuture<Void> increments = bufferedIncrements.isEmpty() ? null
+      : asyncTable.incrementAll(bufferedIncrements);
+    RuntimeException failure = null;
+    try {
+      if (writes != null) {
+        RemoteDatasetClient.getUnchecked(writes);
+        // only discard the writes once they were applied
+        bufferedWrites.clear();
+      }
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+    try {
+      if (increments != null) {
+        RemoteDatasetClient.getUnchecked(increments);
+        bufferedIncrements.clear();
+      }
+    } catch (RuntimeException e) {
+      if (failure == null) {
+        failure = e;
+      } else {
+        failure.addSuppressed(e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private boolean isBufferEmpty() {
+    return bufferedWrites.isEmpty() && bufferedIncrements.isEmpty();
+  }
+
+  private void flushIfFull() {
+    if (bufferedWrites.size() + bufferedIncrements.size() >= maxBufferedKeys
+      || System.currentTimeMillis() - oldestBufferedTime >= maxBufferAgeMillis) {
+      flush();
+    }
+  }
+
+  /**
+   * Scans the given range of keys one page at a time, prefetching the next page while the current one is consumed.
+   */
+  PrefetchingPageIterator<KeyValue<byte[], byte[]>> scanPages(@Nullable final byte[] startKey,
+                                                              @Nullable final byte[] stopKey) {
+    flush();
+    return new PrefetchingPageIterator<KeyValue<byte[], byte[]>>() {
+      @Override
+      protected CompletableFuture<Page<KeyValue<byte[], byte[]>>> fetchPage(@Nullable byte[] resumeToken) {
+        return asyncTable.scan(resumeToken == null ? startKey : resumeToken, stopKey, scanPageSize);
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
   }
 
   @Override
@@ -136,7 +284,7 @@ public class RemoteKeyValueTable extends KeyValueTable {
 
   @Override
   public List<Split> getSplits() {
-    throw new UnsupportedOperationException();
+    return getSplits(-1, null, null);
   }
 
   @Override
@@ -144,33 +292,18 @@ public class RemoteKeyValueTable extends KeyValueTable {
     throw new UnsupportedOperationException();
   }
 
-  public List<Split> getSplits(int numSplits, byte[] start, byte[] stop) {
-    throw new UnsupportedOperationException();
+  public List<Split> getSplits(int numSplits, @Nullable byte[] start, @Nullable byte[] stop) {
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.getSplits(numSplits, start, stop));
   }
 
   @Override
   public SplitReader<byte[], byte[]> createSplitReader(Split split) {
-    throw new UnsupportedOperationException();
+    return new PagedSplitReader(this);
   }
 
-
   @Override
-  public CloseableIterator<KeyValue<byte[], byte[]>> scan(byte[] startRow, byte[] stopRow) {
-    throw new UnsupportedOperationException();
-  }
-
-  private <T> T doPost(String method, String json, Class<T> clz) {
-    HttpResponse response = doPost(method, json);
-    return GSON.fromJson(response.getResponseBodyAsString(), clz);
-  }
-
-  private HttpResponse doPost(String method, String json) {
-    try {
-      URL url = new URL(serviceURL, method);
-      return restClient.execute(HttpMethod.POST, url, json,
-                                ImmutableMap.of(), clientConfig.getAccessToken());
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
-    }
+  public CloseableIterator<KeyValue<byte[], byte[]>> scan(@Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    return scanPages(startRow, stopRow);
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.kvtable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Arguments for a paged {@link io.cdap.cdap.api.dataset.lib.KeyValueTable#scan(byte[], byte[])}.
+ */
+public final class ScanRequest {
+  @Nullable
+  private final byte[] startKey;
+  @Nullable
+  private final byte[] stopKey;
+  private final int limit;
+
+  public ScanRequest(@Nullable byte[] startKey, @Nullable byte[] stopKey, int limit) {
+    this.startKey = startKey;
+    this.stopKey = stopKey;
+    this.limit = limit;
+  }
+
+  @Nullable
+  public byte[] getStartKey() {
+    return startKey;
+  }
+
+  @Nullable
+  public byte[] getStopKey() {
+    return stopKey;
+  }
+
+  /**
+   * @return the maximum number of key/value pairs to return in one page
+   */
+  public int getLimit() {
+    return limit;
+  }
+}
@@ -18,23 +18,15 @@ package io.cdap.cdap.remote.dataset.table;
 
 import io.cdap.cdap.api.data.batch.RecordScanner;
 import io.cdap.cdap.api.data.batch.Split;
-import io.cdap.cdap.api.data.batch.SplitReader;
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.dataset.table.Row;
-import io.cdap.cdap.api.dataset.table.Scan;
-import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.data2.dataset2.lib.table.AbstractTable;
-import org.apache.tephra.Transaction;
 
 import java.lang.reflect.Type;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 
 /**
  * Override the AbstractTable in CDAP repo, but throwing {@link UnsupportedOperationException} for:
- * TransactionAware methods, createSplitRecordScanner, createSplitReader, scan,
- * because these operations are not supported in the remote implementation of Table.
+ * createSplitRecordScanner, because this operation is not supported in the remote implementation of Table.
  */
 public abstract class AbstractRemoteTable extends AbstractTable {
 
@@ -44,31 +36,6 @@ public abstract class AbstractRemoteTable extends AbstractTable {
     super(new HashMap<String, String>());
   }
 
-  @Override
-  public Scanner scan(byte[] startRow, byte[] stopRow) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Scanner scan(Scan scan) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public List<Split> getSplits() {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public List<Split> getSplits(int numSplits, byte[] start, byte[] stop) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public SplitReader<byte[], Row> createSplitReader(Split split) {
-    throw new UnsupportedOperationException();
-  }
-
   @Override
   public Type getRecordType() {
     throw new UnsupportedOperationException();
@@ -78,41 +45,4 @@ public abstract class AbstractRemoteTable extends AbstractTable {
   public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split) {
     throw new UnsupportedOperationException();
   }
-
-  // TransactionAware methods:
-  @Override
-  public void startTx(Transaction transaction) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public void updateTx(Transaction transaction) {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public Collection<byte[]> getTxChanges() {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public boolean commitTx() throws Exception {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public void postTxCommit() {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public boolean rollbackTx() throws Exception {
-    throw new UnsupportedOperationException();
-  }
-
-  @Override
-  public String getTransactionAwareName() {
-    throw new UnsupportedOperationException();
-  }
 }
-
@@ -18,19 +18,29 @@ package io.cdap.cdap.remote.dataset.table;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.api.dataset.table.Delete;
 import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Increment;
 import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
 import io.cdap.cdap.api.service.http.HttpServiceRequest;
 import io.cdap.cdap.api.service.http.HttpServiceResponder;
-import io.cdap.cdap.internal.guava.reflect.TypeToken;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.SplitBoundaries;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+import io.cdap.cdap.remote.dataset.codec.HandlerCodec;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -41,18 +51,28 @@ import javax.ws.rs.PathParam;
  */
 public abstract class AbstractTableHttpHandler extends AbstractHttpServiceHandler {
   private static final Gson GSON = new GsonBuilder().enableComplexMapKeySerialization().create();
+  private static final HandlerCodec CODEC = new HandlerCodec(new JsonCodec(GSON), TableFormats.createBinaryCodec());
+  // upper bound on the size of the rows returned in one page of a scan, regardless of the requested limit
+  private static final long MAX_SCAN_PAGE_BYTES = 4 * 1024 * 1024;
 
   /**
    * @return {@link Table} dataset.
    */
   protected abstract Table getTable();
 
+  /**
+   * @return the {@link Table} dataset that a request operates on, which is {@link #getTable()} by default
+   */
+  protected Table getTable(HttpServiceRequest request) {
+    return getTable();
+  }
+
   @Path("get")
   @POST
   public void get(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    Get get = deser(request, Get.class);
-    Row row = getTable().get(get);
-    responder.sendJson(200, row, row.getClass(), GSON);
+    Get get = CODEC.decode(request, Get.class);
+    Row row = getTable(request).get(get);
+    CODEC.respond(request, responder, toResult(row), Result.class);
   }
 
   @Path("namespaces/{namespace}/datasets/{dataset}/get")
@@ -60,14 +80,19 @@ public abstract class AbstractTableHttpHandler extends AbstractHttpServiceHandle
   public void getOnDataset(HttpServiceRequest request, HttpServiceResponder responder,
                            @PathParam("namespace") String namespace,
                            @PathParam("dataset") String dataset) throws Exception {
-    Table table = getContext().getDataset(namespace, dataset);
-    Get get = deser(request, Get.class);
-    Row row = table.get(get);
-    Map<byte[], byte[]> result = new HashMap<>();
-    for (byte[] column : get.getColumns()) {
+    Get get = CODEC.decode(request, Get.class);
+    Row row = getTable(namespace, dataset).get(get);
+    List<byte[]> columns = get.getColumns();
+    if (columns == null || columns.isEmpty()) {
+      CODEC.respond(request, responder, row.getColumns(), TableFormats.COLUMNS_TYPE);
+      return;
+    }
+    // sized so that it never needs to grow
+    Map<byte[], byte[]> result = new HashMap<>(columns.size() * 4 / 3 + 1);
+    for (byte[] column : columns) {
       result.put(column, row.get(column));
     }
-    responder.sendJson(200, result, new TypeToken<Map<byte[], byte[]>> () { }.getType(), GSON);
+    CODEC.respond(request, responder, result, TableFormats.COLUMNS_TYPE);
   }
 
   @Path("namespaces/{namespace}/datasets/{dataset}/put")
@@ -75,10 +100,9 @@ public abstract class AbstractTableHttpHandler extends AbstractHttpServiceHandle
   public void putOnDataset(HttpServiceRequest request, HttpServiceResponder responder,
                            @PathParam("namespace") String namespace,
                            @PathParam("dataset") String dataset) throws Exception {
-    Table table = getContext().getDataset(namespace, dataset);
-    Put put = deser(request, Put.class);
-    table.put(put);
-    responder.sendJson(200);
+    Put put = CODEC.decode(request, Put.class);
+    getTable(namespace, dataset).put(put);
+    responder.sendStatus(200);
   }
 
   @Path("namespaces/{namespace}/datasets/{dataset}/incrementAndGet")
@@ -86,55 +110,185 @@ public abstract class AbstractTableHttpHandler extends AbstractHttpServiceHandle
   public void incrementAndGetOnDataset(HttpServiceRequest request, HttpServiceResponder responder,
                                        @PathParam("namespace") String namespace,
                                        @PathParam("dataset") String dataset) throws Exception {
-    Table table = getContext().getDataset(namespace, dataset);
-    Increment increment = deser(request, Increment.class);
-    Row row = table.incrementAndGet(increment);
-    responder.sendJson(200, row, row.getClass(), GSON);
+    Increment increment = CODEC.decode(request, Increment.class);
+    Row row = getTable(namespace, dataset).incrementAndGet(increment);
+    CODEC.respond(request, responder, toResult(row), Result.class);
   }
 
   @Path("getWithRange")
   @POST
   public void getWithRange(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    GetRequest getRequest = deser(request, GetRequest.class);
-    Row row = getTable().get(getRequest.getRow(), getRequest.getStartColumn(),
+    GetRequest getRequest = CODEC.decode(request, GetRequest.class);
+    Row row = getTable(request).get(getRequest.getRow(), getRequest.getStartColumn(),
                              getRequest.getStopColumn(), getRequest.getLimit());
-    responder.sendJson(200, row, row.getClass(), GSON);
+    CODEC.respond(request, responder, toResult(row), Result.class);
+  }
+
+  /**
+   * Returns one page of the columns of a row within a range of columns. A page holds at most the requested number of
+   * columns, and stops early once it holds {@link #MAX_SCAN_PAGE_BYTES}. The response carries the column to resume
+   * from, if there are more columns in the range.
+   */
+  @Path("getColumnPage")
+  @POST
+  public void getColumnPage(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    GetRequest getRequest = CODEC.decode(request, GetRequest.class);
+    int limit = getRequest.getLimit();
+    // reads one more column than the page holds, which is where the next page starts
+    Row row = getTable(request).get(getRequest.getRow(), getRequest.getStartColumn(), getRequest.getStopColumn(),
+                             limit == Integer.MAX_VALUE ? limit : limit + 1);
+    List<KeyValue<byte[], byte[]>> columns = new ArrayList<>(Math.min(limit, row.getColumns().size()));
+    byte[] resumeToken = null;
+    long pageBytes = 0;
+    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+      if (columns.size() >= limit || pageBytes >= MAX_SCAN_PAGE_BYTES) {
+        resumeToken = column.getKey();
+        break;
+      }
+      columns.add(new KeyValue<>(column.getKey(), column.getValue()));
+      pageBytes += column.getKey().length + column.getValue().length;
+    }
+    CODEC.respond(request, responder, new Page<>(columns, resumeToken), TableFormats.COLUMN_PAGE_TYPE);
+  }
+
+  /**
+   * Returns one page of a scan. A page holds at most the requested number of rows, and stops early once it
+   * holds {@link #MAX_SCAN_PAGE_BYTES}. The response carries the row to resume the scan from, if there are more rows.
+   */
+  @Path("scan")
+  @POST
+  public void scan(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    ScanRequest scanRequest = CODEC.decode(request, ScanRequest.class);
+    List<Result> rows = new ArrayList<>();
+    byte[] resumeToken = null;
+    long pageBytes = 0;
+    try (Scanner scanner = getTable(request).scan(scanRequest.getStartRow(), scanRequest.getStopRow())) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        if (rows.size() >= scanRequest.getLimit() || pageBytes >= MAX_SCAN_PAGE_BYTES) {
+          resumeToken = row.getRow();
+          break;
+        }
+        rows.add(toResult(row));
+        pageBytes += sizeOf(row);
+      }
+    }
+    CODEC.respond(request, responder, new Page<>(rows, resumeToken), TableFormats.SCAN_PAGE_TYPE);
+  }
+
+  /**
+   * Enumerates the splits of the table, responding with the row at which each split starts.
+   */
+  @Path("splits")
+  @POST
+  public void splits(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    SplitsRequest splitsRequest = CODEC.decode(request, SplitsRequest.class);
+    Table table = getTable(request);
+    List<Split> splits = table.getSplits(splitsRequest.getNumSplits(), splitsRequest.getStart(),
+                                         splitsRequest.getStop());
+    List<byte[]> startRows = SplitBoundaries.getStartKeys(table, splits, splitsRequest.getStart());
+    CODEC.respond(request, responder, startRows.toArray(new byte[startRows.size()][]), byte[][].class);
   }
 
   @Path("put")
   @POST
   public void put(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    Put put = deser(request, Put.class);
-    getTable().put(put);
+    Put put = CODEC.decode(request, Put.class);
+    getTable(request).put(put);
     responder.sendStatus(200);
   }
 
   @Path("delete")
   @POST
   public void delete(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    Delete delete = deser(request, Delete.class);
-    getTable().delete(delete);
+    Delete delete = CODEC.decode(request, Delete.class);
+    getTable(request).delete(delete);
+    responder.sendStatus(200);
+  }
+
+  /**
+   * Applies a list of Put, Delete and Increment operations, in order. Since the handler method runs in a single
+   * transaction, either all or none of the operations are applied.
+   */
+  @Path("batch")
+  @POST
+  public void batch(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    TableMutation[] mutations = CODEC.decode(request, TableMutation[].class);
+    Table table = getTable(request);
+    for (TableMutation mutation : mutations) {
+      mutation.apply(table);
+    }
     responder.sendStatus(200);
   }
 
+  /**
+   * Applies the changes of a client-side transaction, in order and in a single transaction, but only if all of its
+   * expected values are current. Responds with whether the changes were applied.
+   */
+  @Path("commit")
+  @POST
+  public void commit(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    CommitRequest commit = CODEC.decode(request, CommitRequest.class);
+    Table table = getTable(request);
+    for (ExpectedValue expectedValue : commit.getExpectedValues()) {
+      byte[] value = table.get(expectedValue.getRow(), expectedValue.getColumn());
+      if (!Arrays.equals(value, expectedValue.getValue())) {
+        CODEC.respond(request, responder, false, Boolean.class);
+        return;
+      }
+    }
+    for (TableMutation mutation : commit.getMutations()) {
+      mutation.apply(table);
+    }
+    CODEC.respond(request, responder, true, Boolean.class);
+  }
+
   @Path("incrementAndGet")
   @POST
   public void incrementAndGet(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    Increment increment = deser(request, Increment.class);
-    Row row = getTable().incrementAndGet(increment);
-    responder.sendJson(200, row, row.getClass(), GSON);
+    Increment increment = CODEC.decode(request, Increment.class);
+    Row row = getTable(request).incrementAndGet(increment);
+    CODEC.respond(request, responder, toResult(row), Result.class);
+  }
+
+  /**
+   * Increments without reading the result back, so that readless increments can be used if the table enables them.
+   */
+  @Path("increment")
+  @POST
+  public void increment(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
+    Increment increment = CODEC.decode(request, Increment.class);
+    getTable(request).increment(increment);
+    responder.sendStatus(200);
   }
 
   @Path("compareAndSwap")
   @POST
   public void compareAndSwap(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
-    CompareAndSwapRequest compareAndSwap = deser(request, CompareAndSwapRequest.class);
-    Boolean succeeded = getTable().compareAndSwap(compareAndSwap.getRow(), compareAndSwap.getColumn(),
+    CompareAndSwapRequest compareAndSwap = CODEC.decode(request, CompareAndSwapRequest.class);
+    Boolean succeeded = getTable(request).compareAndSwap(compareAndSwap.getRow(), compareAndSwap.getColumn(),
                                                   compareAndSwap.getOldValue(), compareAndSwap.getNewValue());
-    responder.sendJson(200, succeeded, succeeded.getClass(), GSON);
+    CODEC.respond(request, responder, succeeded, Boolean.class);
+  }
+
+  /**
+   * Returns a Table of any namespace for the current transaction. The service context caches dataset instances per
+   * handler thread, so this does not instantiate the Table on every request. The handler must not keep the instance
+   * itself across requests, because the context only adds a dataset to the transactions in which it is looked up.
+   */
+  private Table getTable(String namespace, String dataset) {
+    return getContext().getDataset(namespace, dataset);
+  }
+
+  private static long sizeOf(Row row) {
+    long size = row.getRow().length;
+    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+      size += column.getKey().length + column.getValue().length;
+    }
+    return size;
   }
 
-  private <T> T deser(HttpServiceRequest request, Class<T> clz) {
-    return GSON.fromJson(Bytes.toString(request.getContent()), clz);
+  private static Result toResult(Row row) {
+    return row instanceof Result ? (Result) row : new Result(row.getRow(), row.getColumns());
   }
 }
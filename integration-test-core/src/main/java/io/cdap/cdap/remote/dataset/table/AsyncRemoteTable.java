@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.client.config.ClientConfig;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import io.cdap.cdap.remote.dataset.SortedBytesMapDeserializer;
+import io.cdap.cdap.remote.dataset.SplitBoundaries;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
+import io.cdap.cdap.remote.dataset.codec.BinaryCodec;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+
+/**
+ * Asynchronous client of a Table dataset service. Every operation is sent as soon as it is called, and returns
+ * a {@link CompletableFuture} that completes with the response, so that many operations can be in flight at once.
+ * Operations which are in flight at the same time are not guaranteed to be applied in the order they were called.
+ *
+ * @see RemoteDatasetClient for the limit on the number of operations in flight
+ */
+public class AsyncRemoteTable {
+
+  private static final Gson GSON = new GsonBuilder()
+    .enableComplexMapKeySerialization()
+    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
+    .registerTypeAdapter(TableFormats.COLUMNS_TYPE, new SortedBytesMapDeserializer())
+    .create();
+  private static final JsonCodec JSON_CODEC = new JsonCodec(GSON);
+  private static final BinaryCodec BINARY_CODEC = TableFormats.createBinaryCodec();
+
+  private final RemoteDatasetClient client;
+
+  public AsyncRemoteTable(URL serviceURL, RESTClient restClient, ClientConfig clientConfig) {
+    this.client = new RemoteDatasetClient(serviceURL, restClient, clientConfig, JSON_CODEC, BINARY_CODEC);
+  }
+
+  public CompletableFuture<Row> get(Get get) {
+    return client.executeAsync("get", get, Get.class, Result.class);
+  }
+
+  public CompletableFuture<Row> get(byte[] row, @Nullable byte[] startColumn, @Nullable byte[] stopColumn,
+                                    int limit) {
+    GetRequest getRequest = new GetRequest(row, startColumn, stopColumn, limit);
+    return client.executeAsync("getWithRange", getRequest, GetRequest.class, Result.class);
+  }
+
+  /**
+   * Fetches one page of at most {@code limit} columns of a row, within the given range of columns.
+   */
+  public CompletableFuture<Page<KeyValue<byte[], byte[]>>> getColumnPage(byte[] row, @Nullable byte[] startColumn,
+                                                                          @Nullable byte[] stopColumn, int limit) {
+    GetRequest getRequest = new GetRequest(row, startColumn, stopColumn, limit);
+    return client.executeAsync("getColumnPage", getRequest, GetRequest.class, TableFormats.COLUMN_PAGE_TYPE);
+  }
+
+  /**
+   * Fetches one page of at most {@code limit} rows of a scan.
+   */
+  public CompletableFuture<Page<Result>> scan(@Nullable byte[] startRow, @Nullable byte[] stopRow, int limit) {
+    ScanRequest scanRequest = new ScanRequest(startRow, stopRow, limit);
+    return client.executeAsync("scan", scanRequest, ScanRequest.class, TableFormats.SCAN_PAGE_TYPE);
+  }
+
+  /**
+   * Enumerates the splits of the table between the given rows, as {@link io.cdap.cdap.remote.dataset.RowRangeSplit}s.
+   *
+   * @param numSplits the desired number of splits, or a non-positive number to let the table decide
+   */
+  public CompletableFuture<List<Split>> getSplits(int numSplits, @Nullable byte[] start, @Nullable final byte[] stop) {
+    SplitsRequest splitsRequest = new SplitsRequest(numSplits, start, stop);
+    return client.<byte[][]>executeAsync("splits", splitsRequest, SplitsRequest.class, byte[][].class)
+      .thenApply(startRows -> SplitBoundaries.toSplits(startRows, stop));
+  }
+
+  public CompletableFuture<Void> put(Put put) {
+    return client.executeAsync("put", put, Put.class);
+  }
+
+  public CompletableFuture<Void> delete(Delete delete) {
+    return client.executeAsync("delete", delete, Delete.class);
+  }
+
+  public CompletableFuture<Void> increment(Increment increment) {
+    return client.executeAsync("increment", increment, Increment.class);
+  }
+
+  public CompletableFuture<Row> incrementAndGet(Increment increment) {
+    return client.executeAsync("incrementAndGet", increment, Increment.class, Result.class);
+  }
+
+  public CompletableFuture<Boolean> compareAndSwap(byte[] row, byte[] column,
+                                                   @Nullable byte[] oldValue, @Nullable byte[] newValue) {
+    CompareAndSwapRequest compareAndSwap = new CompareAndSwapRequest(row, column, oldValue, newValue);
+    return client.executeAsync("compareAndSwap", compareAndSwap, CompareAndSwapRequest.class, Boolean.class);
+  }
+
+  /**
+   * Applies the changes of a client-side transaction, completing with whether they were applied.
+   */
+  public CompletableFuture<Boolean> commit(CommitRequest commit) {
+    return client.executeAsync("commit", commit, CommitRequest.class, Boolean.class);
+  }
+
+  /**
+   * Applies the given mutations in order, in a single transaction.
+   */
+  public CompletableFuture<Void> batch(List<TableMutation> mutations) {
+    if (mutations.size() == 1) {
+      TableMutation mutation = mutations.get(0);
+      if (mutation.getPut() != null) {
+        return put(mutation.getPut());
+      }
+      if (mutation.getDelete() != null) {
+        return delete(mutation.getDelete());
+      }
+      return increment(mutation.getIncrement());
+    }
+    TableMutation[] mutationArray = mutations.toArray(new TableMutation[mutations.size()]);
+    return client.executeAsync("batch", mutationArray, TableMutation[].class);
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+/**
+ * The changes of a client-side transaction, which are applied atomically by the {@link AbstractTableHttpHandler},
+ * but only if all expected values are still current.
+ */
+public final class CommitRequest {
+  private final TableMutation[] mutations;
+  private final ExpectedValue[] expectedValues;
+
+  public CommitRequest(TableMutation[] mutations, ExpectedValue[] expectedValues) {
+    this.mutations = mutations;
+    this.expectedValues = expectedValues;
+  }
+
+  public TableMutation[] getMutations() {
+    return mutations;
+  }
+
+  public ExpectedValue[] getExpectedValues() {
+    return expectedValues;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import javax.annotation.Nullable;
+
+/**
+ * The value that a column must have for a {@link CommitRequest} to be applied.
+ */
+public final class ExpectedValue {
+  private final byte[] row;
+  private final byte[] column;
+  @Nullable
+  private final byte[] value;
+
+  public ExpectedValue(byte[] row, byte[] column, @Nullable byte[] value) {
+    this.row = row;
+    this.column = column;
+    this.value = value;
+  }
+
+  public byte[] getRow() {
+    return row;
+  }
+
+  public byte[] getColumn() {
+    return column;
+  }
+
+  /**
+   * @return the expected value, or {@code null} if the column is expected not to exist
+   */
+  @Nullable
+  public byte[] getValue() {
+    return value;
+  }
+}
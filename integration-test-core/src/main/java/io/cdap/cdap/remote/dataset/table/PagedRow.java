@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.PrefetchingPageIterator;
+import io.cdap.cdap.remote.dataset.SortedBytesMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link io.cdap.cdap.api.dataset.table.Row} with a range of columns too large to be read at once. Only the first
+ * page of columns is held in memory. The following pages are fetched from the service while the columns are iterated,
+ * and dropped once they are consumed, so every iteration over the columns reads them again.
+ *
+ * Looking up a single column of the first page is served from memory. Looking up any other column iterates over
+ * the pages up to that column, so the columns of wide rows should be iterated rather than looked up one by one.
+ */
+final class PagedRow extends Result {
+
+  PagedRow(AsyncRemoteTable table, byte[] row, Page<KeyValue<byte[], byte[]>> firstPage,
+           @Nullable byte[] stopColumn, int limit, int pageSize) {
+    super(row, new Columns(table, row, firstPage, stopColumn, limit, pageSize));
+  }
+
+  /**
+   * Read-only view of the columns of the row, in the order of the column keys.
+   */
+  private static final class Columns extends AbstractMap<byte[], byte[]> {
+    private final AsyncRemoteTable table;
+    private final byte[] row;
+    private final Map<byte[], byte[]> firstColumns;
+    // the first column after the first page, where the second page starts
+    private final byte[] resumeColumn;
+    @Nullable
+    private final byte[] stopColumn;
+    private final int limit;
+    private final int pageSize;
+    private int size = -1;
+
+    Columns(AsyncRemoteTable table, byte[] row, Page<KeyValue<byte[], byte[]>> firstPage,
+            @Nullable byte[] stopColumn, int limit, int pageSize) {
+      this.table = table;
+      this.row = row;
+      this.firstColumns = new SortedBytesMap(firstPage.getItems().size());
+      for (KeyValue<byte[], byte[]> column : firstPage.getItems()) {
+        firstColumns.put(column.getKey(), column.getValue());
+      }
+      this.resumeColumn = firstPage.getResumeToken();
+      this.stopColumn = stopColumn;
+      this.limit = limit;
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public Set<Map.Entry<byte[], byte[]>> entrySet() {
+      return new AbstractSet<Map.Entry<byte[], byte[]>>() {
+        @Override
+        public Iterator<Map.Entry<byte[], byte[]>> iterator() {
+          return new ColumnIterator();
+        }
+
+        @Override
+        public int size() {
+          return Columns.this.size();
+        }
+      };
+    }
+
+    /**
+     * Counts the columns by iterating over all of them, the first time it is called.
+     */
+    @Override
+    public int size() {
+      if (size < 0) {
+        int count = 0;
+        for (Iterator<Map.Entry<byte[], byte[]>> columns = new ColumnIterator(); columns.hasNext(); columns.next()) {
+          count++;
+        }
+        size = count;
+      }
+      return size;
+    }
+
+    /**
+     * The first page may hold no columns while the range continues, for example if the service stopped at its byte
+     * limit, so in that case the next page is fetched.
+     */
+    @Override
+    public boolean isEmpty() {
+      if (!firstColumns.isEmpty()) {
+        return false;
+      }
+      if (size >= 0) {
+        return size == 0;
+      }
+      ColumnIterator columns = new ColumnIterator();
+      try {
+        return !columns.hasNext();
+      } finally {
+        columns.closePages();
+      }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public byte[] get(Object key) {
+      if (!(key instanceof byte[])) {
+        return null;
+      }
+      byte[] column = (byte[]) key;
+      if (Bytes.compareTo(column, resumeColumn) < 0) {
+        return firstColumns.get(column);
+      }
+      if (stopColumn != null && Bytes.compareTo(column, stopColumn) >= 0) {
+        return null;
+      }
+      Iterator<Map.Entry<byte[], byte[]>> columns = new ColumnIterator();
+      while (columns.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = columns.next();
+        int comparison = Bytes.compareTo(entry.getKey(), column);
+        if (comparison >= 0) {
+          return comparison == 0 ? entry.getValue() : null;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Iterates over the first page, and then over the pages fetched from the service, up to the limit.
+     */
+    private final class ColumnIterator extends AbstractIterator<Map.Entry<byte[], byte[]>> {
+      private final Iterator<Map.Entry<byte[], byte[]>> firstPage = firstColumns.entrySet().iterator();
+      private PrefetchingPageIterator<KeyValue<byte[], byte[]>> nextPages;
+      private int returned;
+
+      @Override
+      protected Map.Entry<byte[], byte[]> computeNext() {
+        if (returned >= limit) {
+          closePages();
+          return endOfData();
+        }
+        returned++;
+        if (firstPage.hasNext()) {
+          return firstPage.next();
+        }
+        if (nextPages == null) {
+          nextPages = new PrefetchingPageIterator<KeyValue<byte[], byte[]>>() {
+            @Override
+            protected CompletableFuture<Page<KeyValue<byte[], byte[]>>> fetchPage(@Nullable byte[] resumeToken) {
+              return table.getColumnPage(row, resumeToken == null ? resumeColumn : resumeToken, stopColumn, pageSize);
+            }
+          };
+        }
+        if (!nextPages.hasNext()) {
+          return endOfData();
+        }
+        KeyValue<byte[], byte[]> column = nextPages.next();
+        return new AbstractMap.SimpleImmutableEntry<>(column.getKey(), column.getValue());
+      }
+
+      private void closePages() {
+        if (nextPages != null) {
+          nextPages.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.remote.dataset.PrefetchingPageIterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link Scanner} over the pages of rows returned by a {@link PrefetchingPageIterator}.
+ */
+final class RemoteScanner implements Scanner {
+
+  private final PrefetchingPageIterator<? extends Row> rows;
+
+  RemoteScanner(PrefetchingPageIterator<? extends Row> rows) {
+    this.rows = rows;
+  }
+
+  @Nullable
+  @Override
+  public Row next() {
+    return rows.hasNext() ? rows.next() : null;
+  }
+
+  @Override
+  public void close() {
+    rows.close();
+  }
+}
@@ -16,130 +16,409 @@
 
 package io.cdap.cdap.remote.dataset.table;
 
-import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.base.Preconditions;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.data.batch.SplitReader;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.api.dataset.table.Delete;
 import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Increment;
 import io.cdap.cdap.api.dataset.table.Put;
 import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scan;
+import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.client.config.ClientConfig;
 import io.cdap.cdap.client.util.RESTClient;
-import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
-import io.cdap.common.http.HttpMethod;
-import io.cdap.common.http.HttpResponse;
+import io.cdap.cdap.remote.dataset.AgedBufferFlusher;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.PrefetchingPageIterator;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import io.cdap.cdap.remote.dataset.SortedBytesMap;
+import org.apache.tephra.Transaction;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Remote implementation of {@link io.cdap.cdap.api.dataset.table.Table}.
+ *
+ * Puts, deletes and increments are buffered on the client and sent to the service in a single batch (and therefore
+ * a single transaction) once the buffer reaches {@code maxBufferedMutations} operations, once the oldest buffered
+ * operation is older than {@code maxBufferAgeMillis}, or when {@link #flush()} is called. The age is enforced by a
+ * flush scheduled on a background thread, so buffered operations are sent even if no further operation is made. If
+ * that flush fails, the operations stay buffered, and the next flush, read or {@link #close()} sends them again and
+ * throws its error. Any buffered operations are sent before a read, so that reads through the same instance always
+ * see its own writes.
+ *
+ * Scans are served one page at a time by the service, so that a scan over a large table takes one request per page.
+ * Likewise, the columns of a row within a range are read {@code remote.table.column.page.size} columns at a time.
+ * If the range holds more columns than that, the row returned only holds the first page, and reads the following
+ * pages while its columns are iterated.
+ * Splits are enumerated by the service, and each split is read through a scan over its range of rows.
+ *
+ * All operations are sent through an {@link AsyncRemoteTable}, waiting for their completion.
+ *
+ * Between {@link #startTx} and the end of the transaction, all changes are kept on the client instead, and reads
+ * merge them into the rows read from the service. {@link #commitTx} sends all changes in a single request, which the
+ * service applies in a single transaction. Since the changes are applied at that point, they cannot be rolled back
+ * if the transaction fails to commit afterwards.
  */
-public class RemoteTable extends AbstractRemoteTable {
+public class RemoteTable extends AbstractRemoteTable implements Flushable {
 
-  private static final Gson GSON = new GsonBuilder()
-    .enableComplexMapKeySerialization()
-    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
-    .create();
+  // maximum number of mutations to buffer before sending them to the service
+  public static final String BUFFER_SIZE = "remote.table.buffer.size";
+  // maximum amount of time in milliseconds that a mutation is buffered for
+  public static final String BUFFER_AGE_MS = "remote.table.buffer.age.ms";
+  // number of rows to fetch per request when scanning
+  public static final String SCAN_PAGE_SIZE = "remote.table.scan.page.size";
+  // number of columns to fetch per request when reading a range of columns
+  public static final String COLUMN_PAGE_SIZE = "remote.table.column.page.size";
 
-  private final URL serviceURL;
-  private final RESTClient restClient;
-  private final ClientConfig clientConfig;
+  private final AsyncRemoteTable asyncTable;
+  private final String transactionAwareName;
+  private final int maxBufferedMutations;
+  private final long maxBufferAgeMillis;
+  private final int scanPageSize;
+  private final int columnPageSize;
+  private final List<TableMutation> bufferedMutations;
+  // increments which have not been sent yet, summed up by row and column
+  private final Map<byte[], Map<byte[], Long>> bufferedIncrements;
+  private int bufferedIncrementCells;
+  private long oldestMutationTime;
+  // sends the buffered mutations once the oldest of them reaches the maximum age
+  private final AgedBufferFlusher agedFlusher;
+  // changes of the current transaction, or null if there is no transaction
+  private TransactionBuffer txBuffer;
 
   public RemoteTable(URL serviceURL, RESTClient restClient, ClientConfig clientConfig) {
-    this.serviceURL = serviceURL;
-    this.restClient = restClient;
-    this.clientConfig = clientConfig;
+    this(serviceURL, restClient, clientConfig,
+         Integer.parseInt(System.getProperty(BUFFER_SIZE, "1000")),
+         Long.parseLong(System.getProperty(BUFFER_AGE_MS, "1000")));
+  }
+
+  /**
+   * @param maxBufferedMutations the maximum number of mutations to buffer on the client. A value of 1 disables
+   *                             buffering, sending each mutation as soon as it is made.
+   * @param maxBufferAgeMillis the maximum age of the oldest buffered mutation before the buffer is sent
+   */
+  public RemoteTable(URL serviceURL, RESTClient restClient, ClientConfig clientConfig,
+                     int maxBufferedMutations, long maxBufferAgeMillis) {
+    Preconditions.checkArgument(maxBufferedMutations > 0, "maxBufferedMutations must be positive.");
+    this.asyncTable = new AsyncRemoteTable(serviceURL, restClient, clientConfig);
+    this.transactionAwareName = "RemoteTable(" + serviceURL + ")";
+    this.maxBufferedMutations = maxBufferedMutations;
+    this.maxBufferAgeMillis = maxBufferAgeMillis;
+    this.scanPageSize = Integer.parseInt(System.getProperty(SCAN_PAGE_SIZE, "1000"));
+    this.columnPageSize = Integer.parseInt(System.getProperty(COLUMN_PAGE_SIZE, "1000"));
+    this.bufferedMutations = new ArrayList<>();
+    this.bufferedIncrements = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    // every mutation is sent as soon as it is buffered if buffering is disabled
+    this.agedFlusher = new AgedBufferFlusher(this, transactionAwareName,
+                                             maxBufferedMutations == 1 ? 0 : maxBufferAgeMillis, this::flush);
   }
 
   @Nonnull
   @Override
   public Row get(byte[] row) {
-    String json = GSON.toJson(new Get(row));
-    return doPost("get", json, Result.class);
+    flush();
+    Row result = RemoteDatasetClient.getUnchecked(asyncTable.get(new Get(row)));
+    return txBuffer == null ? result : new Result(row, txBuffer.merge(row, result.getColumns(), null));
   }
 
   @Nonnull
   @Override
   public Row get(byte[] row, byte[][] columns) {
-    String json = GSON.toJson(new Get(row, columns));
-    return doPost("get", json, Result.class);
+    flush();
+    Row result = RemoteDatasetClient.getUnchecked(asyncTable.get(new Get(row, columns)));
+    return txBuffer == null ? result : new Result(row, txBuffer.merge(row, result.getColumns(), columns));
   }
 
   @Nonnull
   @Override
   public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
-    String str = GSON.toJson(new GetRequest(row, startColumn, stopColumn, limit));
-    return doPost("getWithRange", str, Result.class);
+    flush();
+    if (txBuffer == null) {
+      Page<KeyValue<byte[], byte[]>> firstPage = RemoteDatasetClient.getUnchecked(
+        asyncTable.getColumnPage(row, startColumn, stopColumn, Math.min(limit, columnPageSize)));
+      if (firstPage.getResumeToken() != null && firstPage.getItems().size() < limit) {
+        return new PagedRow(asyncTable, row, firstPage, stopColumn, limit, columnPageSize);
+      }
+      Map<byte[], byte[]> columns = new SortedBytesMap(firstPage.getItems().size());
+      for (KeyValue<byte[], byte[]> column : firstPage.getItems()) {
+        columns.put(column.getKey(), column.getValue());
+      }
+      return new Result(row, columns);
+    }
+    // each column changed in the transaction may have been deleted, so read as many more columns
+    int remoteLimit = (int) Math.min(Integer.MAX_VALUE, (long) limit + txBuffer.getChangeCount(row));
+    Row result = RemoteDatasetClient.getUnchecked(asyncTable.get(row, startColumn, stopColumn, remoteLimit));
+    return new Result(row, txBuffer.merge(row, result.getColumns(), startColumn, stopColumn, limit));
+  }
+
+  @Override
+  public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    return scan(new Scan(startRow, stopRow));
+  }
+
+  /**
+   * Scans the table one page of {@code remote.table.scan.page.size} rows at a time, prefetching the next page while
+   * the current one is consumed. Scan filters are not supported.
+   */
+  @Override
+  public Scanner scan(Scan scan) {
+    if (scan.getFilter() != null) {
+      throw new UnsupportedOperationException("Scan filters are not supported on Remote Table.");
+    }
+    flush();
+    final byte[] startRow = scan.getStartRow();
+    final byte[] stopRow = scan.getStopRow();
+    Scanner scanner = new RemoteScanner(new PrefetchingPageIterator<Result>() {
+      @Override
+      protected CompletableFuture<Page<Result>> fetchPage(@Nullable byte[] resumeToken) {
+        return asyncTable.scan(resumeToken == null ? startRow : resumeToken, stopRow, scanPageSize);
+      }
+    });
+    return txBuffer == null ? scanner : txBuffer.merge(scanner, startRow, stopRow);
+  }
+
+  @Override
+  public List<Split> getSplits() {
+    return getSplits(-1, null, null);
+  }
+
+  @Override
+  public List<Split> getSplits(int numSplits, @Nullable byte[] start, @Nullable byte[] stop) {
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.getSplits(numSplits, start, stop));
+  }
+
+  @Override
+  public SplitReader<byte[], Row> createSplitReader(Split split) {
+    return new ScannerSplitReader(this);
   }
 
   @Override
   public void put(byte[] row, byte[][] columns, byte[][] values) {
+    if (txBuffer != null) {
+      txBuffer.put(row, columns, values);
+      return;
+    }
     Put put = new Put(row);
     for (int i = 0; i < columns.length; i++) {
       put.add(columns[i], values[i]);
     }
-
-    String json = GSON.toJson(put);
-    doPost("put", json);
+    buffer(row, TableMutation.of(put));
   }
 
   @Override
   public void delete(byte[] row) {
-    String json = GSON.toJson(new Delete(row));
-    doPost("delete", json);
+    if (txBuffer != null) {
+      // like in other buffering Tables, only the columns that exist at this point are deleted
+      Map<byte[], byte[]> columns = get(row).getColumns();
+      txBuffer.delete(row, columns.keySet().toArray(new byte[columns.size()][]));
+      return;
+    }
+    buffer(row, TableMutation.of(new Delete(row)));
   }
 
   @Override
   public void delete(byte[] row, byte[][] columns) {
-    String json = GSON.toJson(new Delete(row, columns));
-    doPost("delete", json);
+    if (txBuffer != null) {
+      txBuffer.delete(row, columns);
+      return;
+    }
+    buffer(row, TableMutation.of(new Delete(row, columns)));
   }
 
   @Override
   public Row incrementAndGet(byte[] row, byte[][] columns, long[] amounts) {
+    if (txBuffer != null) {
+      txBuffer.increment(row, columns, amounts);
+      return get(row, columns);
+    }
+    flush();
     Increment increment = new Increment(row);
     for (int i = 0; i < columns.length; i++) {
       increment.add(columns[i], amounts[i]);
     }
-    String json = GSON.toJson(increment);
-    return doPost("incrementAndGet", json, Result.class);
+    return RemoteDatasetClient.getUnchecked(asyncTable.incrementAndGet(increment));
   }
 
+  /**
+   * Increments are buffered like other mutations, but repeated increments of the same row and column are combined
+   * into a single one, until the buffer is sent.
+   */
   @Override
-  public void increment(byte[] row, byte[][] columns, long[] amounts) {
-    // ignore performance
-    incrementAndGet(row, columns, amounts);
+  public synchronized void increment(byte[] row, byte[][] columns, long[] amounts) {
+    if (txBuffer != null) {
+      txBuffer.increment(row, columns, amounts);
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (isBufferEmpty()) {
+      startBuffer(now);
+    }
+    Map<byte[], Long> rowIncrements = bufferedIncrements.get(row);
+    if (rowIncrements == null) {
+      rowIncrements = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      bufferedIncrements.put(row, rowIncrements);
+    }
+    for (int i = 0; i < columns.length; i++) {
+      Long current = rowIncrements.put(columns[i], amounts[i]);
+      if (current == null) {
+        bufferedIncrementCells++;
+      } else {
+        rowIncrements.put(columns[i], current + amounts[i]);
+      }
+    }
+    flushIfNeeded(now);
   }
 
   @Override
   public boolean compareAndSwap(byte[] key, byte[] keyColumn, byte[] oldValue, byte[] newValue) {
-    String json = GSON.toJson(new CompareAndSwapRequest(key, keyColumn, oldValue, newValue));
-    return doPost("compareAndSwap", json, Boolean.class);
+    if (txBuffer != null) {
+      byte[] value = get(key, new byte[][] { keyColumn }).get(keyColumn);
+      if (!Arrays.equals(value, oldValue)) {
+        return false;
+      }
+      if (!txBuffer.hasChange(key, keyColumn)) {
+        // the value was read from the service, so it must not change before this transaction is committed
+        txBuffer.expect(key, keyColumn, oldValue);
+      }
+      txBuffer.put(key, new byte[][] { keyColumn }, new byte[][] { newValue });
+      return true;
+    }
+    flush();
+    return RemoteDatasetClient.getUnchecked(asyncTable.compareAndSwap(key, keyColumn, oldValue, newValue));
+  }
+
+  /**
+   * Sends all buffered mutations to the service, in a single batch.
+   */
+  @Override
+  public synchronized void flush() {
+    agedFlusher.bufferFlushed();
+    for (Map.Entry<byte[], Map<byte[], Long>> rowIncrements : bufferedIncrements.entrySet()) {
+      bufferedMutations.add(TableMutation.of(toIncrement(rowIncrements.getKey(), rowIncrements.getValue())));
+    }
+    bufferedIncrements.clear();
+    bufferedIncrementCells = 0;
+
+    if (bufferedMutations.isEmpty()) {
+      return;
+    }
+    RemoteDatasetClient.getUnchecked(asyncTable.batch(bufferedMutations));
+    // the batch is applied atomically, so only discard the mutations once it succeeded
+    bufferedMutations.clear();
   }
 
   @Override
   public void close() throws IOException {
-    // no-op
+    flush();
+  }
+
+  /**
+   * Starts keeping all changes on the client until the transaction ends. The transaction itself is not used by the
+   * remote Table, and may be {@code null}.
+   */
+  @Override
+  public void startTx(@Nullable Transaction transaction) {
+    flush();
+    txBuffer = new TransactionBuffer();
+  }
+
+  @Override
+  public void updateTx(Transaction transaction) {
+    // nothing to do, since no changes are sent before the commit
+  }
+
+  @Override
+  public Collection<byte[]> getTxChanges() {
+    return txBuffer == null ? Collections.<byte[]>emptyList() : txBuffer.getChangedRows();
+  }
+
+  /**
+   * Sends all changes of the transaction to the service in a single request. The service applies them in a single
+   * transaction, unless a value read by a compare-and-swap in this transaction has changed in the meantime.
+   *
+   * @return whether the changes were applied
+   */
+  @Override
+  public boolean commitTx() {
+    if (txBuffer == null || txBuffer.isEmpty()) {
+      return true;
+    }
+    return RemoteDatasetClient.getUnchecked(asyncTable.commit(txBuffer.toCommitRequest()));
+  }
+
+  @Override
+  public void postTxCommit() {
+    txBuffer = null;
+  }
+
+  @Override
+  public boolean rollbackTx() {
+    txBuffer = null;
+    return true;
+  }
+
+  @Override
+  public String getTransactionAwareName() {
+    return transactionAwareName;
+  }
+
+  private synchronized void buffer(byte[] row, TableMutation mutation) {
+    long now = System.currentTimeMillis();
+    if (isBufferEmpty()) {
+      startBuffer(now);
+    }
+    // increments of the row buffered before this mutation must be applied before it
+    Map<byte[], Long> rowIncrements = bufferedIncrements.remove(row);
+    if (rowIncrements != null) {
+      bufferedIncrementCells -= rowIncrements.size();
+      bufferedMutations.add(TableMutation.of(toIncrement(row, rowIncrements)));
+    }
+    bufferedMutations.add(mutation);
+    flushIfNeeded(now);
   }
 
-  private <T> T doPost(String method, String json, Class<T> clz) {
-    HttpResponse response = doPost(method, json);
-    return GSON.fromJson(response.getResponseBodyAsString(), clz);
+  /**
+   * Records the time of the first mutation put into the empty buffer, and schedules the flush for its maximum age.
+   */
+  private void startBuffer(long now) {
+    oldestMutationTime = now;
+    agedFlusher.bufferStarted();
   }
 
-  private HttpResponse doPost(String method, String json) {
-    try {
-      URL url = new URL(serviceURL, method);
-      return restClient.execute(HttpMethod.POST, url, json,
-                                ImmutableMap.of(), clientConfig.getAccessToken());
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
+  private void flushIfNeeded(long now) {
+    if (bufferedMutations.size() + bufferedIncrementCells >= maxBufferedMutations
+      || now - oldestMutationTime >= maxBufferAgeMillis) {
+      flush();
+    }
+  }
+
+  private boolean isBufferEmpty() {
+    return bufferedMutations.isEmpty() && bufferedIncrements.isEmpty();
+  }
+
+  private static Increment toIncrement(byte[] row, Map<byte[], Long> columnIncrements) {
+    Increment increment = new Increment(row);
+    for (Map.Entry<byte[], Long> columnIncrement : columnIncrements.entrySet()) {
+      increment.add(columnIncrement.getKey(), columnIncrement.getValue());
     }
+    return increment;
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import javax.annotation.Nullable;
+
+/**
+ * Arguments for a paged {@link io.cdap.cdap.api.dataset.table.Table#scan(byte[], byte[])}.
+ */
+public final class ScanRequest {
+  @Nullable
+  private final byte[] startRow;
+  @Nullable
+  private final byte[] stopRow;
+  private final int limit;
+
+  public ScanRequest(@Nullable byte[] startRow, @Nullable byte[] stopRow, int limit) {
+    this.startRow = startRow;
+    this.stopRow = stopRow;
+    this.limit = limit;
+  }
+
+  @Nullable
+  public byte[] getStartRow() {
+    return startRow;
+  }
+
+  @Nullable
+  public byte[] getStopRow() {
+    return stopRow;
+  }
+
+  /**
+   * @return the maximum number of rows to return in one page
+   */
+  public int getLimit() {
+    return limit;
+  }
+}
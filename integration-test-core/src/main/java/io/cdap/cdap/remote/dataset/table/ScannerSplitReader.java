@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.data.batch.SplitReader;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.remote.dataset.RowRangeSplit;
+
+/**
+ * {@link SplitReader} which reads a {@link RowRangeSplit} of a {@link Table} through a scan over its rows.
+ */
+final class ScannerSplitReader extends SplitReader<byte[], Row> {
+
+  private final Table table;
+  private Scanner scanner;
+  private Row current;
+
+  ScannerSplitReader(Table table) {
+    this.table = table;
+  }
+
+  @Override
+  public void initialize(Split split) {
+    if (!(split instanceof RowRangeSplit)) {
+      throw new IllegalArgumentException("Split must be obtained from the remote Table, but is " + split);
+    }
+    RowRangeSplit rowRange = (RowRangeSplit) split;
+    scanner = table.scan(rowRange.getStart(), rowRange.getStop());
+  }
+
+  @Override
+  public boolean nextKeyValue() {
+    current = scanner.next();
+    return current != null;
+  }
+
+  @Override
+  public byte[] getCurrentKey() {
+    return current.getRow();
+  }
+
+  @Override
+  public Row getCurrentValue() {
+    return current;
+  }
+
+  @Override
+  public void close() {
+    if (scanner != null) {
+      scanner.close();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.remote.dataset.Page;
+import io.cdap.cdap.remote.dataset.SplitsRequest;
+import io.cdap.cdap.remote.dataset.codec.BinaryCodec;
+import io.cdap.cdap.remote.dataset.codec.BinaryFormat;
+import io.cdap.cdap.remote.dataset.codec.BinaryFormats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Types and {@link BinaryFormat}s of the request and response bodies of the {@link AbstractTableHttpHandler}.
+ */
+public final class TableFormats {
+
+  public static final Type SCAN_PAGE_TYPE = new TypeToken<Page<Result>>() { }.getType();
+  public static final Type COLUMNS_TYPE = new TypeToken<Map<byte[], byte[]>>() { }.getType();
+  public static final Type COLUMN_PAGE_TYPE = new TypeToken<Page<KeyValue<byte[], byte[]>>>() { }.getType();
+
+  private static final byte PUT = 0;
+  private static final byte DELETE = 1;
+  private static final byte INCREMENT = 2;
+
+  private static final BinaryFormat<GetRequest> GET_REQUEST = new BinaryFormat<GetRequest>() {
+    @Override
+    public void write(DataOutput out, GetRequest value) throws IOException {
+      BinaryFormats.writeBytes(out, value.getRow());
+      BinaryFormats.writeBytes(out, value.getStartColumn());
+      BinaryFormats.writeBytes(out, value.getStopColumn());
+      out.writeInt(value.getLimit());
+    }
+
+    @Override
+    public GetRequest read(DataInput in) throws IOException {
+      return new GetRequest(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in),
+                            BinaryFormats.readBytes(in), in.readInt());
+    }
+  };
+
+  private static final BinaryFormat<ScanRequest> SCAN_REQUEST = new BinaryFormat<ScanRequest>() {
+    @Override
+    public void write(DataOutput out, ScanRequest value) throws IOException {
+      BinaryFormats.writeBytes(out, value.getStartRow());
+      BinaryFormats.writeBytes(out, value.getStopRow());
+      out.writeInt(value.getLimit());
+    }
+
+    @Override
+    public ScanRequest read(DataInput in) throws IOException {
+      return new ScanRequest(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in), in.readInt());
+    }
+  };
+
+  private static final BinaryFormat<CompareAndSwapRequest> COMPARE_AND_SWAP_REQUEST =
+    new BinaryFormat<CompareAndSwapRequest>() {
+      @Override
+      public void write(DataOutput out, CompareAndSwapRequest value) throws IOException {
+        BinaryFormats.writeBytes(out, value.getRow());
+        BinaryFormats.writeBytes(out, value.getColumn());
+        BinaryFormats.writeBytes(out, value.getOldValue());
+        BinaryFormats.writeBytes(out, value.getNewValue());
+      }
+
+      @Override
+      public CompareAndSwapRequest read(DataInput in) throws IOException {
+        return new CompareAndSwapRequest(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in),
+                                         BinaryFormats.readBytes(in), BinaryFormats.readBytes(in));
+      }
+    };
+
+  private static final BinaryFormat<TableMutation[]> MUTATIONS = new BinaryFormat<TableMutation[]>() {
+    @Override
+    public void write(DataOutput out, TableMutation[] value) throws IOException {
+      writeMutations(out, value);
+    }
+
+    @Override
+    public TableMutation[] read(DataInput in) throws IOException {
+      return readMutations(in);
+    }
+  };
+
+  private static final BinaryFormat<CommitRequest> COMMIT_REQUEST = new BinaryFormat<CommitRequest>() {
+    @Override
+    public void write(DataOutput out, CommitRequest value) throws IOException {
+      writeMutations(out, value.getMutations());
+      out.writeInt(value.getExpectedValues().length);
+      for (ExpectedValue expectedValue : value.getExpectedValues()) {
+        BinaryFormats.writeBytes(out, expectedValue.getRow());
+        BinaryFormats.writeBytes(out, expectedValue.getColumn());
+        BinaryFormats.writeBytes(out, expectedValue.getValue());
+      }
+    }
+
+    @Override
+    public CommitRequest read(DataInput in) throws IOException {
+      TableMutation[] mutations = readMutations(in);
+      ExpectedValue[] expectedValues = new ExpectedValue[in.readInt()];
+      for (int i = 0; i < expectedValues.length; i++) {
+        expectedValues[i] = new ExpectedValue(BinaryFormats.readBytes(in), BinaryFormats.readBytes(in),
+                                              BinaryFormats.readBytes(in));
+      }
+      return new CommitRequest(mutations, expectedValues);
+    }
+  };
+
+  private TableFormats() { }
+
+  private static void writeMutations(DataOutput out, TableMutation[] mutations) throws IOException {
+    out.writeInt(mutations.length);
+    for (TableMutation mutation : mutations) {
+      if (mutation.getPut() != null) {
+        out.writeByte(PUT);
+        BinaryFormats.PUT.write(out, mutation.getPut());
+      } else if (mutation.getDelete() != null) {
+        out.writeByte(DELETE);
+        BinaryFormats.DELETE.write(out, mutation.getDelete());
+      } else {
+        out.writeByte(INCREMENT);
+        BinaryFormats.INCREMENT.write(out, mutation.getIncrement());
+      }
+    }
+  }
+
+  private static TableMutation[] readMutations(DataInput in) throws IOException {
+    TableMutation[] mutations = new TableMutation[in.readInt()];
+    for (int i = 0; i < mutations.length; i++) {
+      byte type = in.readByte();
+      switch (type) {
+        case PUT:
+          mutations[i] = TableMutation.of(BinaryFormats.PUT.read(in));
+          break;
+        case DELETE:
+          mutations[i] = TableMutation.of(BinaryFormats.DELETE.read(in));
+          break;
+        case INCREMENT:
+          mutations[i] = TableMutation.of(BinaryFormats.INCREMENT.read(in));
+          break;
+        default:
+          throw new IOException("Unknown mutation type " + type);
+      }
+    }
+    return mutations;
+  }
+
+  /**
+   * @return a {@link BinaryCodec} for all types exchanged with the {@link AbstractTableHttpHandler}
+   */
+  public static BinaryCodec createBinaryCodec() {
+    return new BinaryCodec()
+      .register(Get.class, BinaryFormats.GET)
+      .register(Put.class, BinaryFormats.PUT)
+      .register(Delete.class, BinaryFormats.DELETE)
+      .register(Increment.class, BinaryFormats.INCREMENT)
+      .register(Result.class, BinaryFormats.RESULT)
+      .register(Boolean.class, BinaryFormats.BOOLEAN)
+      .register(byte[][].class, BinaryFormats.BYTES_ARRAY)
+      .register(SplitsRequest.class, BinaryFormats.SPLITS_REQUEST)
+      .register(COLUMNS_TYPE, BinaryFormats.BYTES_MAP)
+      .register(SCAN_PAGE_TYPE, BinaryFormats.pageOf(BinaryFormats.RESULT))
+      .register(COLUMN_PAGE_TYPE, BinaryFormats.pageOf(BinaryFormats.KEY_VALUE))
+      .register(GetRequest.class, GET_REQUEST)
+      .register(ScanRequest.class, SCAN_REQUEST)
+      .register(CompareAndSwapRequest.class, COMPARE_AND_SWAP_REQUEST)
+      .register(TableMutation[].class, MUTATIONS)
+      .register(CommitRequest.class, COMMIT_REQUEST);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Table;
+
+import javax.annotation.Nullable;
+
+/**
+ * A single Put, Delete or Increment, as sent in a batch to the {@link AbstractTableHttpHandler}.
+ * Exactly one of the operations is set.
+ */
+public final class TableMutation {
+  @Nullable
+  private final Put put;
+  @Nullable
+  private final Delete delete;
+  @Nullable
+  private final Increment increment;
+
+  private TableMutation(@Nullable Put put, @Nullable Delete delete, @Nullable Increment increment) {
+    this.put = put;
+    this.delete = delete;
+    this.increment = increment;
+  }
+
+  public static TableMutation of(Put put) {
+    return new TableMutation(put, null, null);
+  }
+
+  public static TableMutation of(Delete delete) {
+    return new TableMutation(null, delete, null);
+  }
+
+  public static TableMutation of(Increment increment) {
+    return new TableMutation(null, null, increment);
+  }
+
+  @Nullable
+  public Put getPut() {
+    return put;
+  }
+
+  @Nullable
+  public Delete getDelete() {
+    return delete;
+  }
+
+  @Nullable
+  public Increment getIncrement() {
+    return increment;
+  }
+
+  /**
+   * Applies this mutation to the given {@link Table}.
+   */
+  public void apply(Table table) {
+    if (put != null) {
+      table.put(put);
+    } else if (delete != null) {
+      table.delete(delete);
+    } else if (increment != null) {
+      table.increment(increment);
+    } else {
+      throw new IllegalArgumentException("TableMutation must have one of put, delete or increment set.");
+    }
+  }
+}
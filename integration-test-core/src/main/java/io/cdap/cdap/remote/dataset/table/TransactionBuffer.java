@@ -0,0 +1,309 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * The changes made to a {@link RemoteTable} within a transaction, which are kept on the client until the transaction
+ * is committed. Reads within the transaction merge these changes into the rows read from the service.
+ *
+ * This class is not thread-safe, since a transaction is used by a single thread.
+ */
+final class TransactionBuffer {
+
+  // changes by row and column
+  private final NavigableMap<byte[], NavigableMap<byte[], Update>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  // values read from the service by compare-and-swap operations, which must still be current at commit
+  private final List<ExpectedValue> expectedValues = new ArrayList<>();
+
+  void put(byte[] row, byte[][] columns, byte[][] values) {
+    NavigableMap<byte[], Update> rowChanges = getRowChanges(row);
+    for (int i = 0; i < columns.length; i++) {
+      rowChanges.put(columns[i], Update.put(values[i]));
+    }
+  }
+
+  void delete(byte[] row, byte[][] columns) {
+    NavigableMap<byte[], Update> rowChanges = getRowChanges(row);
+    for (byte[] column : columns) {
+      rowChanges.put(column, Update.DELETE);
+    }
+  }
+
+  void increment(byte[] row, byte[][] columns, long[] amounts) {
+    NavigableMap<byte[], Update> rowChanges = getRowChanges(row);
+    for (int i = 0; i < columns.length; i++) {
+      Update update = rowChanges.get(columns[i]);
+      rowChanges.put(columns[i], update == null ? Update.increment(amounts[i]) : update.plus(amounts[i]));
+    }
+  }
+
+  /**
+   * Records that the given column must have the given value in the service when the transaction is committed.
+   */
+  void expect(byte[] row, byte[] column, @Nullable byte[] value) {
+    expectedValues.add(new ExpectedValue(row, column, value));
+  }
+
+  boolean hasChange(byte[] row, byte[] column) {
+    NavigableMap<byte[], Update> rowChanges = changes.get(row);
+    return rowChanges != null && rowChanges.containsKey(column);
+  }
+
+  /**
+   * @return the number of changed columns of the given row
+   */
+  int getChangeCount(byte[] row) {
+    NavigableMap<byte[], Update> rowChanges = changes.get(row);
+    return rowChanges == null ? 0 : rowChanges.size();
+  }
+
+  boolean isEmpty() {
+    return changes.isEmpty() && expectedValues.isEmpty();
+  }
+
+  Collection<byte[]> getChangedRows() {
+    return new ArrayList<>(changes.keySet());
+  }
+
+  /**
+   * @return the changes as the request to send to the service, with one mutation per kind of change and row
+   */
+  CommitRequest toCommitRequest() {
+    List<TableMutation> mutations = new ArrayList<>();
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChanges : changes.entrySet()) {
+      byte[] row = rowChanges.getKey();
+      Put put = null;
+      List<byte[]> deletedColumns = new ArrayList<>();
+      Increment increment = null;
+      for (Map.Entry<byte[], Update> change : rowChanges.getValue().entrySet()) {
+        Update update = change.getValue();
+        if (update.increment) {
+          increment = increment == null ? new Increment(row) : increment;
+          increment.add(change.getKey(), update.amount);
+        } else if (update.value == null) {
+          deletedColumns.add(change.getKey());
+        } else {
+          put = put == null ? new Put(row) : put;
+          put.add(change.getKey(), update.value);
+        }
+      }
+      if (put != null) {
+        mutations.add(TableMutation.of(put));
+      }
+      if (!deletedColumns.isEmpty()) {
+        mutations.add(TableMutation.of(new Delete(row, deletedColumns.toArray(new byte[deletedColumns.size()][]))));
+      }
+      if (increment != null) {
+        mutations.add(TableMutation.of(increment));
+      }
+    }
+    return new CommitRequest(mutations.toArray(new TableMutation[mutations.size()]),
+                             expectedValues.toArray(new ExpectedValue[expectedValues.size()]));
+  }
+
+  /**
+   * Merges the changes of a row into its columns as read from the service.
+   *
+   * @param columns the columns that were read, or {@code null} if all columns were read
+   */
+  Map<byte[], byte[]> merge(byte[] row, Map<byte[], byte[]> remoteColumns, @Nullable byte[][] columns) {
+    NavigableMap<byte[], Update> rowChanges = changes.get(row);
+    if (rowChanges == null) {
+      return remoteColumns;
+    }
+    if (columns == null) {
+      return merge(remoteColumns, rowChanges);
+    }
+    NavigableMap<byte[], Update> selectedChanges = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : columns) {
+      Update update = rowChanges.get(column);
+      if (update != null) {
+        selectedChanges.put(column, update);
+      }
+    }
+    return merge(remoteColumns, selectedChanges);
+  }
+
+  /**
+   * Merges the changes of a row into a range of its columns as read from the service. To account for columns deleted
+   * in this transaction, the service must have been asked for {@link #getChangeCount} more columns than the limit.
+   */
+  Map<byte[], byte[]> merge(byte[] row, Map<byte[], byte[]> remoteColumns,
+                            @Nullable byte[] startColumn, @Nullable byte[] stopColumn, int limit) {
+    NavigableMap<byte[], Update> rowChanges = changes.get(row);
+    if (rowChanges == null) {
+      return remoteColumns;
+    }
+    Map<byte[], byte[]> merged = merge(remoteColumns, range(rowChanges, startColumn, stopColumn));
+    if (merged.size() <= limit) {
+      return merged;
+    }
+    Map<byte[], byte[]> limited = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    Iterator<Map.Entry<byte[], byte[]>> iterator = merged.entrySet().iterator();
+    while (limited.size() < limit) {
+      Map.Entry<byte[], byte[]> column = iterator.next();
+      limited.put(column.getKey(), column.getValue());
+    }
+    return limited;
+  }
+
+  /**
+   * Merges the changed rows between the given rows into the rows returned by a scan of the service.
+   */
+  Scanner merge(final Scanner remote, @Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    final Iterator<byte[]> changedRows = new ArrayList<>(range(changes, startRow, stopRow).keySet()).iterator();
+    return new Scanner() {
+      private Row nextRemote = remote.next();
+      private byte[] nextChanged = changedRows.hasNext() ? changedRows.next() : null;
+
+      @Nullable
+      @Override
+      public Row next() {
+        while (nextRemote != null || nextChanged != null) {
+          int comparison = nextRemote == null ? 1
+            : nextChanged == null ? -1 : Bytes.compareTo(nextRemote.getRow(), nextChanged);
+          byte[] row;
+          Map<byte[], byte[]> remoteColumns;
+          if (comparison <= 0) {
+            row = nextRemote.getRow();
+            remoteColumns = nextRemote.getColumns();
+            nextRemote = remote.next();
+          } else {
+            row = nextChanged;
+            remoteColumns = Collections.emptyMap();
+          }
+          if (comparison >= 0) {
+            nextChanged = changedRows.hasNext() ? changedRows.next() : null;
+          }
+          Map<byte[], byte[]> columns = merge(row, remoteColumns, null);
+          if (!columns.isEmpty()) {
+            return new Result(row, columns);
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public void close() {
+        remote.close();
+      }
+    };
+  }
+
+  private NavigableMap<byte[], Update> getRowChanges(byte[] row) {
+    NavigableMap<byte[], Update> rowChanges = changes.get(row);
+    if (rowChanges == null) {
+      rowChanges = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      changes.put(row, rowChanges);
+    }
+    return rowChanges;
+  }
+
+  private static Map<byte[], byte[]> merge(Map<byte[], byte[]> remoteColumns, Map<byte[], Update> changes) {
+    Map<byte[], byte[]> merged = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    merged.putAll(remoteColumns);
+    for (Map.Entry<byte[], Update> change : changes.entrySet()) {
+      byte[] value = change.getValue().apply(merged.get(change.getKey()));
+      if (value == null) {
+        merged.remove(change.getKey());
+      } else {
+        merged.put(change.getKey(), value);
+      }
+    }
+    return merged;
+  }
+
+  private static <V> NavigableMap<byte[], V> range(NavigableMap<byte[], V> map,
+                                                   @Nullable byte[] start, @Nullable byte[] stop) {
+    if (start != null && stop != null) {
+      return map.subMap(start, true, stop, false);
+    }
+    if (start != null) {
+      return map.tailMap(start, true);
+    }
+    return stop == null ? map : map.headMap(stop, false);
+  }
+
+  /**
+   * A change to a column: either a new value, a delete, or an increment by an amount.
+   */
+  private static final class Update {
+    private static final Update DELETE = new Update(null, 0, false);
+
+    @Nullable
+    private final byte[] value;
+    private final long amount;
+    private final boolean increment;
+
+    private Update(@Nullable byte[] value, long amount, boolean increment) {
+      this.value = value;
+      this.amount = amount;
+      this.increment = increment;
+    }
+
+    static Update put(@Nullable byte[] value) {
+      return value == null ? DELETE : new Update(value, 0, false);
+    }
+
+    static Update increment(long amount) {
+      return new Update(null, amount, true);
+    }
+
+    /**
+     * @return the result of incrementing the column by the given amount after this change
+     */
+    Update plus(long amount) {
+      return increment ? increment(this.amount + amount) : put(Bytes.toBytes(toLong(value) + amount));
+    }
+
+    /**
+     * @return the value of the column after applying this change to the given value, or {@code null} if deleted
+     */
+    @Nullable
+    byte[] apply(@Nullable byte[] current) {
+      return increment ? Bytes.toBytes(toLong(current) + amount) : value;
+    }
+
+    private static long toLong(@Nullable byte[] value) {
+      if (value == null) {
+        return 0L;
+      }
+      if (value.length != Bytes.SIZEOF_LONG) {
+        throw new NumberFormatException("Attempted to increment a value that is not convertible to long.");
+      }
+      return Bytes.toLong(value);
+    }
+  }
+}
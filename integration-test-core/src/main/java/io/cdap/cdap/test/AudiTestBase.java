@@ -17,11 +17,17 @@
 package io.cdap.cdap.test;
 
 import com.google.common.base.Preconditions;
-import com.google.common.io.CharStreams;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.cdap.cdap.api.app.Application;
+import io.cdap.cdap.api.data.batch.BatchReadable;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.data.batch.SplitReader;
 import io.cdap.cdap.api.dataset.Dataset;
 import io.cdap.cdap.api.dataset.DatasetAdmin;
 import io.cdap.cdap.api.dataset.DatasetProperties;
+import io.cdap.cdap.api.dataset.DatasetSpecification;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.table.Table;
@@ -29,7 +35,6 @@ import io.cdap.cdap.client.DatasetClient;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.client.config.ClientConfig;
 import io.cdap.cdap.client.util.RESTClient;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.proto.DatasetInstanceConfiguration;
 import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.proto.ProgramRunStatus;
@@ -38,31 +43,47 @@ import io.cdap.cdap.proto.id.DatasetId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.remote.dataset.AbstractDatasetApp;
+import io.cdap.cdap.remote.dataset.AbstractMultiDatasetApp;
 import io.cdap.cdap.remote.dataset.cube.CubeDatasetApp;
+import io.cdap.cdap.remote.dataset.cube.MultiCubeDatasetApp;
 import io.cdap.cdap.remote.dataset.cube.RemoteCube;
+import io.cdap.cdap.remote.dataset.kvtable.AsyncRemoteKeyValueTable;
 import io.cdap.cdap.remote.dataset.kvtable.KVTableDatasetApp;
+import io.cdap.cdap.remote.dataset.kvtable.MultiKVTableDatasetApp;
 import io.cdap.cdap.remote.dataset.kvtable.RemoteKeyValueTable;
+import io.cdap.cdap.remote.dataset.table.AsyncRemoteTable;
+import io.cdap.cdap.remote.dataset.table.MultiTableDatasetApp;
 import io.cdap.cdap.remote.dataset.table.RemoteTable;
 import io.cdap.cdap.remote.dataset.table.TableDatasetApp;
 import io.cdap.chaosmonkey.proto.ClusterDisruptor;
-import io.cdap.common.ContentProvider;
-import io.cdap.common.http.HttpRequest;
-import io.cdap.common.http.HttpResponse;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Flushable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
 
 /**
  * Custom wrapper around IntegrationTestBase
@@ -81,7 +102,47 @@ public class AudiTestBase extends IntegrationTestBase {
 
   // avoid logging of HttpRequest's body by default, to avoid verbose logging
   private static final int logBodyLimit = Integer.valueOf(System.getProperty("logRequestBodyLimit", "0"));
+  // listener of the requests of each test class, by class name. It is shared by all tests of the class, so that the
+  // latencies of their requests are summarized together, and separate from other classes which may run concurrently.
+  private static final ConcurrentMap<String, RequestStatsListener> REQUEST_STATS = new ConcurrentHashMap<>();
+
+  // logs the latencies of the requests made and the time spent waiting by each test class, once all of its tests ran
+  @ClassRule
+  public static final TestRule REQUEST_STATS_SUMMARY = new TestWatcher() {
+    @Override
+    protected void finished(Description description) {
+      RequestStatsListener requestStats = REQUEST_STATS.remove(description.getClassName());
+      if (requestStats != null) {
+        requestStats.logSummary(description.getClassName());
+      }
+      // waits are named after the code that waited, and kept for the whole JVM since other classes may be waiting
+      String waitPrefix = description.getTestClass() == null ? null : description.getTestClass().getSimpleName() + ".";
+      for (Map.Entry<String, WaitScheduler.WaitStats> entry : WaitScheduler.get().getStats().entrySet()) {
+        if (waitPrefix != null && entry.getKey().startsWith(waitPrefix)) {
+          LOG.info("Waits of {} for {}: {}", description.getClassName(), entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  };
+
+  // set to true to serve all datasets of a type and namespace from one service, rather than deploying one per dataset
+  public static final String SHARED_DATASET_SERVICES = "remote.dataset.shared.services";
+  private static final Map<Class<? extends Application>, Class<? extends AbstractMultiDatasetApp>> MULTI_DATASET_APPS =
+    ImmutableMap.of(TableDatasetApp.class, MultiTableDatasetApp.class,
+                    KVTableDatasetApp.class, MultiKVTableDatasetApp.class,
+                    CubeDatasetApp.class, MultiCubeDatasetApp.class);
+  private static final Map<Class<? extends Application>, Class<? extends Dataset>> DATASET_TYPES =
+    ImmutableMap.of(TableDatasetApp.class, Table.class,
+                    KVTableDatasetApp.class, KeyValueTable.class,
+                    CubeDatasetApp.class, Cube.class);
+  // services for datasets which were started by any test of this JVM, by test manager, instance, namespace,
+  // application class and dataset
+  private static final ConcurrentMap<List<Object>, RunningDatasetService> DATASET_SERVICES =
+    new ConcurrentHashMap<>();
+
   private final RESTClient restClient;
+  // trackers of run records, by the ProgramClient through which they fetch the runs
+  private final Map<ProgramClient, RunRecordTracker> runRecordTrackers = new IdentityHashMap<>();
   protected DisruptorFactory disruptor;
 
   @After
@@ -104,40 +165,9 @@ public class AudiTestBase extends IntegrationTestBase {
     return restClient;
   }
 
-  // constructs a RestClient.Listener with logging upon each request
+  // constructs a RestClient.Listener with logging upon each request, which records the latency of each request
   protected RESTClient.Listener createRestClientListener() {
-    return new RESTClient.Listener() {
-      @Override
-      public void onRequest(HttpRequest httpRequest, int i) {
-        try {
-          ContentProvider<? extends InputStream> inputSupplier = httpRequest.getBody();
-          String body = null;
-          if (inputSupplier != null) {
-            try (InputStream is = inputSupplier.getInput()) {
-              body = CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
-            }
-          }
-
-          if (logBodyLimit > 0) {
-            if (body != null && body.length() >= logBodyLimit) {
-              body = body.substring(0, logBodyLimit) + " ... [TRIMMED]";
-            }
-            LOG.info("Making request: {} {} - body: {}", httpRequest.getMethod(), httpRequest.getURL(), body);
-          } else {
-            // omit the body from being logged, if user doesn't explicitly request it
-            LOG.info("Making request: {} {}", httpRequest.getMethod(), httpRequest.getURL());
-          }
-        } catch (IOException e) {
-          LOG.error("Failed to get body from http request: {} {}", httpRequest.getMethod(), httpRequest.getURL(), e);
-        }
-      }
-
-      @Override
-      public void onResponse(HttpRequest httpRequest, HttpResponse httpResponse, int i) {
-        LOG.info("Received response: [{}] Response Body: {}",
-                 httpResponse.getResponseCode(), httpResponse.getResponseBodyAsString());
-      }
-    };
+    return REQUEST_STATS.computeIfAbsent(getClass().getName(), name -> new RequestStatsListener(logBodyLimit));
   }
 
   protected ClusterDisruptor getClusterDisruptor() throws Exception {
@@ -149,14 +179,27 @@ public class AudiTestBase extends IntegrationTestBase {
 
   protected void checkMetricAtLeast(final Map<String, String> tags, final String metric,
                                     long expectedCount, int timeOutSeconds) throws Exception {
-    Tasks.waitFor(true, () -> getMetricValue(tags, metric) >= expectedCount,
-                  timeOutSeconds, TimeUnit.SECONDS, 500, TimeUnit.MILLISECONDS);
+    newMetricConditions().atLeast(tags, metric, expectedCount).await(timeOutSeconds, TimeUnit.SECONDS);
   }
 
   protected void checkMetric(final Map<String, String> tags, final String metric,
                              long expectedCount, int timeOutSeconds) throws Exception {
-    Tasks.waitFor(expectedCount, () -> getMetricValue(tags, metric),
-                  timeOutSeconds, TimeUnit.SECONDS, 500, TimeUnit.MILLISECONDS);
+    newMetricConditions().equalTo(tags, metric, expectedCount).await(timeOutSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns conditions on metrics to wait for at once, so that tests that wait for many metrics query all metrics
+   * with the same tags in one request.
+   */
+  protected MetricConditions newMetricConditions() {
+    return new MetricConditions(getMetricsClient());
+  }
+
+  /**
+   * Returns the values of many metrics with the same tags, fetched in a single request.
+   */
+  protected Map<String, Long> getMetricValues(Map<String, String> tags, Collection<String> metrics) throws Exception {
+    return MetricConditions.getMetricValues(getMetricsClient(), tags, metrics);
   }
 
   protected long getMetricValue(Map<String, String> tags, String metric) throws Exception {
@@ -174,18 +217,21 @@ public class AudiTestBase extends IntegrationTestBase {
   protected List<RunRecord> getRunRecords(int expectedSize, final ProgramClient programClient, final ProgramId program,
                                           final String status, final long startTime, final long endTime)
     throws Exception {
-    final List<RunRecord> runRecords = new ArrayList<>();
+    final RunRecordTracker tracker = getRunRecordTracker(programClient);
     // Tasks.waitFor can be removed when CDAP-3656 is fixed
-    Tasks.waitFor(expectedSize, new Callable<Integer>() {
-      @Override
-      public Integer call() throws Exception {
-        runRecords.clear();
-        runRecords.addAll(
-          programClient.getProgramRuns(program, status, startTime, endTime, Integer.MAX_VALUE));
-        return runRecords.size();
-      }
+    Tasks.waitFor(expectedSize, () -> {
+      tracker.refresh(program);
+      return tracker.getRuns(program, status, startTime, endTime).size();
     }, 30, TimeUnit.SECONDS, 500, TimeUnit.MILLISECONDS);
-    return runRecords;
+    return tracker.getRuns(program, status, startTime, endTime);
+  }
+
+  /**
+   * Returns the tracker of the run records fetched through a ProgramClient, which is shared by all programs and by
+   * all calls within a test.
+   */
+  protected synchronized RunRecordTracker getRunRecordTracker(ProgramClient programClient) {
+    return runRecordTrackers.computeIfAbsent(programClient, RunRecordTracker::new);
   }
 
   protected void assertRuns(int count, ProgramClient programClient,
@@ -244,33 +290,152 @@ public class AudiTestBase extends IntegrationTestBase {
                                         getRestClient(), getClientConfig()));
   }
 
+  protected AsyncRemoteTable getAsyncTableDataset(String datasetName) throws Exception {
+    return new AsyncRemoteTable(deployServiceForDataset(TEST_NAMESPACE, TableDatasetApp.class, datasetName),
+                                getRestClient(), getClientConfig());
+  }
+
+  protected AsyncRemoteKeyValueTable getAsyncKVTableDataset(String datasetName) throws Exception {
+    return new AsyncRemoteKeyValueTable(deployServiceForDataset(TEST_NAMESPACE, KVTableDatasetApp.class, datasetName),
+                                        getRestClient(), getClientConfig());
+  }
+
   protected DataSetManager<Cube> getCubeDataset(String datasetName) throws Exception {
     return wrap(new RemoteCube(deployServiceForDataset(TEST_NAMESPACE, CubeDatasetApp.class, datasetName),
                                getRestClient(), getClientConfig()));
   }
 
+  /**
+   * Reads all splits of a dataset in parallel, on as many threads as there are processors.
+   *
+   * @see #readSplitsInParallel(BatchReadable, List, int, BiConsumer)
+   */
+  protected <K, V> long readSplitsInParallel(BatchReadable<K, V> dataset, BiConsumer<K, V> consumer) throws Exception {
+    return readSplitsInParallel(dataset, dataset.getSplits(), Runtime.getRuntime().availableProcessors(), consumer);
+  }
+
+  /**
+   * Reads the given splits of a dataset in parallel, on at most {@code parallelism} threads, and passes each record
+   * to the given consumer. The consumer is called concurrently from multiple threads, so it must be thread-safe.
+   *
+   * @return the number of records read
+   */
+  protected <K, V> long readSplitsInParallel(final BatchReadable<K, V> dataset, List<Split> splits, int parallelism,
+                                             final BiConsumer<K, V> consumer) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(parallelism, splits.size())),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("split-reader-%d").build());
+    try {
+      List<Future<Long>> reads = new ArrayList<>(splits.size());
+      for (final Split split : splits) {
+        reads.add(executor.submit(() -> {
+          long records = 0;
+          SplitReader<K, V> reader = dataset.createSplitReader(split);
+          try {
+            reader.initialize(split);
+            while (reader.nextKeyValue()) {
+              consumer.accept(reader.getCurrentKey(), reader.getCurrentValue());
+              records++;
+            }
+          } finally {
+            reader.close();
+          }
+          return records;
+        }));
+      }
+      long records = 0;
+      for (Future<Long> read : reads) {
+        records += read.get();
+      }
+      return records;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   // ensures that the Service for the dataset is deployed and running
   // returns its baseURL
-  private URL deployServiceForDataset(NamespaceId namespace, Class<? extends Application> applicationClz,
-                                      String datasetName) throws Exception {
+  protected URL deployServiceForDataset(NamespaceId namespace, Class<? extends Application> applicationClz,
+                                        String datasetName) throws Exception {
     return deployServiceForDataset(namespace, applicationClz, datasetName, getTestManager());
   }
 
   // ensures that the Service for the dataset is deployed and running
   // returns its baseURL
-  private URL deployServiceForDataset(NamespaceId namespace, Class<? extends Application> applicationClz,
-                                      String datasetName, TestManager testManager) throws Exception {
-    ApplicationManager appManager =
-      testManager.deployApplication(namespace, applicationClz, new AbstractDatasetApp.DatasetConfig(datasetName));
-    ServiceManager serviceManager =
-      appManager.getServiceManager(AbstractDatasetApp.DatasetService.class.getSimpleName());
-
-    // start the service and wait until it becomes reachable
-    if (!serviceManager.isRunning()) {
-      serviceManager.start();
+  private URL deployServiceForDataset(final NamespaceId namespace, final Class<? extends Application> applicationClz,
+                                      final String datasetName, final TestManager testManager) throws Exception {
+    final Class<? extends AbstractMultiDatasetApp> multiDatasetAppClz =
+      Boolean.getBoolean(SHARED_DATASET_SERVICES) ? MULTI_DATASET_APPS.get(applicationClz) : null;
+    if (multiDatasetAppClz == null) {
+      return getDatasetServiceURL(testManager, namespace, applicationClz, datasetName, () -> {
+        ApplicationManager appManager =
+          testManager.deployApplication(namespace, applicationClz, new AbstractDatasetApp.DatasetConfig(datasetName));
+        return appManager.getServiceManager(AbstractDatasetApp.DatasetService.class.getSimpleName());
+      });
+    }
+
+    // the shared service does not create the datasets it serves
+    DatasetId datasetId = namespace.dataset(datasetName);
+    DatasetClient datasetClient = getDatasetClient();
+    if (!datasetClient.exists(datasetId)) {
+      datasetClient.create(datasetId, DATASET_TYPES.get(applicationClz).getName());
     }
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-    return serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    URL serviceURL = getDatasetServiceURL(testManager, namespace, multiDatasetAppClz, null, () -> {
+      ApplicationManager appManager = testManager.deployApplication(namespace, multiDatasetAppClz);
+      return appManager.getServiceManager(AbstractMultiDatasetApp.MultiDatasetService.class.getSimpleName());
+    });
+    return new URL(serviceURL, AbstractMultiDatasetApp.getDatasetPath(datasetName));
+  }
+
+  /**
+   * Returns the URL of a dataset service. The service is deployed and started only if no test of this JVM already
+   * did so through the same test manager and instance, or if it is no longer running, for example because the
+   * application was deleted in between. A service of a single dataset is also deployed and started again if its
+   * dataset was deleted or replaced by another one since the service was started.
+   *
+   * @param datasetName the dataset served by the service, or {@code null} if it serves many datasets
+   * @param deployer deploys the application of the service, and returns the service
+   */
+  private URL getDatasetServiceURL(TestManager testManager, NamespaceId namespace,
+                                   Class<? extends Application> applicationClz, @Nullable String datasetName,
+                                   Callable<ServiceManager> deployer) throws Exception {
+    List<Object> key = Arrays.asList(testManager, getClientConfig().getConnectionConfig().getURI().toString(),
+                                     namespace.getNamespace(), applicationClz.getName(), datasetName);
+    RunningDatasetService service = DATASET_SERVICES.computeIfAbsent(key, k -> new RunningDatasetService());
+    // only one thread deploys a given service, while the others wait for it
+    synchronized (service) {
+      boolean running = service.isRunning();
+      if (running && (datasetName == null
+        || Objects.equals(service.datasetSpec, getDatasetSpec(namespace.dataset(datasetName))))) {
+        return service.url;
+      }
+      if (running) {
+        // the dataset changed, and the service may still hold instances of the former one
+        service.serviceManager.stop();
+        service.serviceManager.waitForStopped(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+      service.serviceManager = null;
+      ServiceManager serviceManager = deployer.call();
+      service.datasetSpec = datasetName == null ? null : getDatasetSpec(namespace.dataset(datasetName));
+
+      // start the service and wait until it becomes reachable
+      if (!serviceManager.isRunning()) {
+        serviceManager.start();
+      }
+      serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      service.url = serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      service.serviceManager = serviceManager;
+      return service.url;
+    }
+  }
+
+  /**
+   * Returns the specification of a dataset, or {@code null} if it doesn't exist.
+   */
+  @Nullable
+  private DatasetSpecification getDatasetSpec(DatasetId datasetId) throws Exception {
+    DatasetClient datasetClient = getDatasetClient();
+    return datasetClient.exists(datasetId) ? datasetClient.get(datasetId).getSpec() : null;
   }
 
   // wraps a Dataset within a DatasetManager
@@ -284,9 +449,38 @@ public class AudiTestBase extends IntegrationTestBase {
 
       @Override
       public void flush() {
-        // no need to do anything, because each operation on the dataset happens within its own transaction
-        // because it is in one HttpHandler method call
+        // each request to the dataset's HttpHandler happens within its own transaction, so the only thing to do is
+        // to send any operations that the remote dataset client is still buffering
+        if (dataset instanceof Flushable) {
+          try {
+            ((Flushable) dataset).flush();
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
       }
     };
   }
+
+  /**
+   * A dataset service which was started by a test, along with its URL and the specification of the dataset it serves.
+   */
+  private static final class RunningDatasetService {
+    private ServiceManager serviceManager;
+    private URL url;
+    private DatasetSpecification datasetSpec;
+
+    boolean isRunning() {
+      if (serviceManager == null) {
+        return false;
+      }
+      try {
+        return serviceManager.isRunning();
+      } catch (Exception e) {
+        // the application of the service may have been deleted
+        LOG.debug("Failed to get the status of dataset service at {}", url, e);
+        return false;
+      }
+    }
+  }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with a bounded relative error, in the manner of HdrHistogram. Values below 64 are
+ * counted exactly, and larger values in buckets of 64 per power of two, so that the error of a percentile is at most
+ * 1/64 of its value. Recording a value is lock-free, so that the histogram can be shared by concurrent requests.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // enough buckets for every positive long value
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long value) {
+    long bounded = Math.max(0, value);
+    counts.incrementAndGet(getIndex(bounded));
+    totalCount.incrementAndGet();
+    max.accumulateAndGet(bounded, Math::max);
+  }
+
+  long getTotalCount() {
+    return totalCount.get();
+  }
+
+  long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @return the value below which the given percentage of the recorded values lie, within the precision of the
+   *         histogram, or 0 if no value was recorded
+   */
+  long getValueAtPercentile(double percentile) {
+    long count = totalCount.get();
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(getValue(i), max.get());
+      }
+    }
+    return 0;
+  }
+
+  private static int getIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    // the highest bit and the SUB_BUCKET_BITS bits below it select the bucket
+    int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /**
+   * @return the middle of the range of values counted by a bucket
+   */
+  private static long getValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    return lowest + ((1L << shift) >> 1);
+  }
+}
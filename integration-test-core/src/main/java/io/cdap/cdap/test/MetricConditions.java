@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.client.MetricsClient;
+import io.cdap.cdap.proto.MetricQueryResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for many metrics to reach their expected values at once. On every tick, the values of all metrics which
+ * share a set of tags are fetched in a single query, however many conditions there are on them. The interval between
+ * ticks starts short, and doubles up to {@link #MAX_INTERVAL_MILLIS} while no metric changes, falling back to
+ * {@link #MIN_INTERVAL_MILLIS} once one does.
+ */
+public final class MetricConditions {
+
+  private static final long MIN_INTERVAL_MILLIS = 100;
+  private static final long MAX_INTERVAL_MILLIS = 2000;
+
+  private final MetricsClient metricsClient;
+  private final List<Condition> conditions = new ArrayList<>();
+
+  public MetricConditions(MetricsClient metricsClient) {
+    this.metricsClient = metricsClient;
+  }
+
+  /**
+   * Adds the condition that a metric reaches exactly the given value.
+   */
+  public MetricConditions equalTo(Map<String, String> tags, String metric, long value) {
+    conditions.add(new Condition(tags, metric, value, false));
+    return this;
+  }
+
+  /**
+   * Adds the condition that a metric reaches at least the given value.
+   */
+  public MetricConditions atLeast(Map<String, String> tags, String metric, long value) {
+    conditions.add(new Condition(tags, metric, value, true));
+    return this;
+  }
+
+  /**
+   * Waits until every condition was met at least once.
+   *
+   * @throws TimeoutException if some conditions were still not met after the timeout, listing them along with the
+   *                          last values of their metrics
+   */
+  public void await(long timeout, TimeUnit timeoutUnit) throws Exception {
+    long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+    List<Condition> pending = new ArrayList<>(conditions);
+    long interval = MIN_INTERVAL_MILLIS;
+    while (true) {
+      Map<Map<String, String>, Set<String>> metricsByTags = new LinkedHashMap<>();
+      for (Condition condition : pending) {
+        metricsByTags.computeIfAbsent(condition.tags, tags -> new LinkedHashSet<>()).add(condition.metric);
+      }
+      Map<Map<String, String>, Map<String, Long>> valuesByTags = new HashMap<>();
+      for (Map.Entry<Map<String, String>, Set<String>> metrics : metricsByTags.entrySet()) {
+        valuesByTags.put(metrics.getKey(), getMetricValues(metricsClient, metrics.getKey(), metrics.getValue()));
+      }
+
+      boolean changed = false;
+      for (Iterator<Condition> iterator = pending.iterator(); iterator.hasNext(); ) {
+        Condition condition = iterator.next();
+        long value = valuesByTags.get(condition.tags).get(condition.metric);
+        changed |= condition.lastValue == null || condition.lastValue != value;
+        condition.lastValue = value;
+        if (condition.isMet()) {
+          iterator.remove();
+        }
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        throw new TimeoutException("Metric conditions were not met: " + pending);
+      }
+      interval = changed ? MIN_INTERVAL_MILLIS : Math.min(MAX_INTERVAL_MILLIS, interval * 2);
+      TimeUnit.MILLISECONDS.sleep(Math.min(interval, remaining));
+    }
+  }
+
+  /**
+   * Returns the aggregate values of many metrics for one set of tags, fetched in a single query. Metrics which have
+   * no value have the value 0.
+   */
+  public static Map<String, Long> getMetricValues(MetricsClient metricsClient, Map<String, String> tags,
+                                                  Collection<String> metrics) throws Exception {
+    Map<String, Long> values = new HashMap<>();
+    for (String metric : metrics) {
+      values.put(metric, 0L);
+    }
+    if (metrics.isEmpty()) {
+      return values;
+    }
+    MetricQueryResult result = metricsClient.query(tags, new ArrayList<>(metrics), Collections.<String>emptyList(),
+                                                   ImmutableMap.<String, String>of());
+    for (MetricQueryResult.TimeSeries series : result.getSeries()) {
+      MetricQueryResult.TimeValue[] timeValues = series.getData();
+      Preconditions.checkState(timeValues.length == 1, "Metric TimeValues has more than one TimeValue: {}",
+                               timeValues);
+      values.put(series.getMetricName(), timeValues[0].getValue());
+    }
+    return values;
+  }
+
+  /**
+   * Expected value of a metric.
+   */
+  private static final class Condition {
+    private final Map<String, String> tags;
+    private final String metric;
+    private final long expected;
+    private final boolean atLeast;
+    private Long lastValue;
+
+    Condition(Map<String, String> tags, String metric, long expected, boolean atLeast) {
+      this.tags = ImmutableMap.copyOf(tags);
+      this.metric = metric;
+      this.expected = expected;
+      this.atLeast = atLeast;
+    }
+
+    boolean isMet() {
+      return atLeast ? lastValue >= expected : lastValue == expected;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %s %s %d (last value %d)", metric, tags, atLeast ? ">=" : "==", expected, lastValue);
+    }
+  }
+}
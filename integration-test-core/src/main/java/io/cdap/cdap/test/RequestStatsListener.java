@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CharStreams;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.common.ContentProvider;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RESTClient.Listener} which logs every request and response, and records the latency of each request in a
+ * {@link LatencyHistogram} of its endpoint. An endpoint is the method of a request along with the template of its
+ * path, in which the names of entities such as namespaces, applications, runs or datasets are replaced by a
+ * placeholder. Bodies are only read, and logged up to the given limit, if that limit is positive.
+ */
+final class RequestStatsListener implements RESTClient.Listener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RequestStatsListener.class);
+  // path segments which are followed by the name of an entity
+  private static final Set<String> COLLECTIONS = ImmutableSet.of(
+    "namespaces", "apps", "versions", "artifacts", "plugins", "datasets", "modules", "services", "workers",
+    "workflows", "mapreduce", "spark", "runs", "schedules", "profiles", "streams", "views", "nodes", "users");
+
+  private final int logBodyLimit;
+  // start time of each request in flight, by identity since a request may be sent again
+  private final Map<HttpRequest, Long> startTimes = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final ConcurrentMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+  RequestStatsListener(int logBodyLimit) {
+    this.logBodyLimit = logBodyLimit;
+  }
+
+  @Override
+  public void onRequest(HttpRequest httpRequest, int attempt) {
+    if (logBodyLimit > 0) {
+      LOG.info("Making request: {} {} - body: {}", httpRequest.getMethod(), httpRequest.getURL(),
+               trim(readBody(httpRequest)));
+    } else {
+      // omit the body from being logged, if user doesn't explicitly request it
+      LOG.info("Making request: {} {}", httpRequest.getMethod(), httpRequest.getURL());
+    }
+    startTimes.put(httpRequest, System.nanoTime());
+  }
+
+  @Override
+  public void onResponse(HttpRequest httpRequest, HttpResponse httpResponse, int attempt) {
+    Long startTime = startTimes.remove(httpRequest);
+    long latencyMicros = startTime == null ? 0 : TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+    byte[] responseBody = httpResponse.getResponseBody();
+    long responseBytes = responseBody == null ? 0 : responseBody.length;
+    Long requestBytes = httpRequest.getBodyLength();
+
+    String endpoint = httpRequest.getMethod() + " " + getPathTemplate(httpRequest.getURL());
+    endpoints.computeIfAbsent(endpoint, key -> new EndpointStats())
+      .record(latencyMicros, requestBytes == null ? 0 : requestBytes, responseBytes);
+
+    if (logBodyLimit > 0) {
+      LOG.info("Received response: [{}] in {} us - body: {}", httpResponse.getResponseCode(), latencyMicros,
+               trim(httpResponse.getResponseBodyAsString()));
+    } else {
+      LOG.info("Received response: [{}] in {} us, {} bytes", httpResponse.getResponseCode(), latencyMicros,
+               responseBytes);
+    }
+  }
+
+  /**
+   * Logs the percentiles of the latencies and the bytes sent and received of each endpoint, and starts recording
+   * from scratch.
+   *
+   * @param name name of what the requests were made by, such as a test class
+   */
+  void logSummary(String name) {
+    Map<String, EndpointStats> sortedEndpoints = new TreeMap<>(endpoints);
+    endpoints.clear();
+    startTimes.clear();
+    if (sortedEndpoints.isEmpty()) {
+      return;
+    }
+    StringBuilder summary = new StringBuilder("Request latencies of ").append(name).append(" in milliseconds:");
+    for (Map.Entry<String, EndpointStats> endpoint : sortedEndpoints.entrySet()) {
+      LatencyHistogram latencies = endpoint.getValue().latencies;
+      summary.append(String.format("%n  %s: count=%d p50=%.2f p99=%.2f p999=%.2f max=%.2f bytesOut=%d bytesIn=%d",
+                                   endpoint.getKey(), latencies.getTotalCount(),
+                                   latencies.getValueAtPercentile(50) / 1000d,
+                                   latencies.getValueAtPercentile(99) / 1000d,
+                                   latencies.getValueAtPercentile(99.9) / 1000d,
+                                   latencies.getMax() / 1000d,
+                                   endpoint.getValue().bytesOut.get(), endpoint.getValue().bytesIn.get()));
+    }
+    LOG.info(summary.toString());
+  }
+
+  /**
+   * Returns the path of a URL, with the names of entities replaced by a placeholder.
+   */
+  static String getPathTemplate(URL url) {
+    StringBuilder template = new StringBuilder();
+    boolean name = false;
+    for (String segment : url.getPath().split("/")) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+      template.append('/').append(name ? "{name}" : segment);
+      name = !name && COLLECTIONS.contains(segment);
+    }
+    return template.length() == 0 ? "/" : template.toString();
+  }
+
+  private static String readBody(HttpRequest httpRequest) {
+    ContentProvider<? extends InputStream> inputSupplier = httpRequest.getBody();
+    if (inputSupplier == null) {
+      return null;
+    }
+    try (InputStream is = inputSupplier.getInput()) {
+      return CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOG.error("Failed to get body from http request: {} {}", httpRequest.getMethod(), httpRequest.getURL(), e);
+      return null;
+    }
+  }
+
+  private String trim(String body) {
+    if (body != null && body.length() >= logBodyLimit) {
+      return body.substring(0, logBodyLimit) + " ... [TRIMMED]";
+    }
+    return body;
+  }
+
+  /**
+   * Latencies and bytes sent and received of the requests to one endpoint.
+   */
+  private static final class EndpointStats {
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+
+    void record(long latencyMicros, long requestBytes, long responseBytes) {
+      latencies.record(latencyMicros);
+      bytesOut.addAndGet(requestBytes);
+      bytesIn.addAndGet(responseBytes);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import io.cdap.cdap.client.ProgramClient;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.RunRecord;
+import io.cdap.cdap.proto.id.ProgramId;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of the run records of many programs, which is refreshed incrementally. A refresh only fetches the runs which
+ * started no earlier than a minute before the newest run seen so far, or than the oldest run which was not finished
+ * yet when last seen, so that the status of such runs is updated. The minute catches runs which become visible after
+ * runs that started later than them. Older runs which ended are never fetched again, however many there are.
+ *
+ * If a cached run within the fetched range is not returned anymore, its runs were deleted on the server, for example
+ * along with their application, so the cache of the program is discarded and all of its runs are fetched again.
+ * {@link #invalidate(ProgramId)} does the same explicitly.
+ */
+public final class RunRecordTracker {
+
+  // how long before the newest run seen a run may start and still become visible after it, in seconds
+  private static final long LATE_RUN_WINDOW_SECONDS = 60;
+
+  private static final Comparator<RunRecord> NEWEST_FIRST =
+    Comparator.comparingLong(RunRecord::getStartTs).reversed();
+
+  private final ProgramClient programClient;
+  private final Map<ProgramId, ProgramRuns> programs = new HashMap<>();
+
+  public RunRecordTracker(ProgramClient programClient) {
+    this.programClient = programClient;
+  }
+
+  /**
+   * Fetches the runs of a program which may have started or changed since the last refresh, or all of its runs if
+   * some of the cached ones were deleted.
+   */
+  public synchronized void refresh(ProgramId program) throws Exception {
+    ProgramRuns runs = programs.computeIfAbsent(program, key -> new ProgramRuns());
+    long fetchStartTs = runs.getFetchStartTs();
+    List<RunRecord> fetched = fetchRuns(program, fetchStartTs);
+    if (!runs.update(fetched, fetchStartTs)) {
+      runs = new ProgramRuns();
+      programs.put(program, runs);
+      runs.update(fetchRuns(program, 0), 0);
+    }
+  }
+
+  /**
+   * Returns the cached runs of a program with the given status, which started within the given time range, newest
+   * first.
+   *
+   * @param status the name of a {@link ProgramRunStatus}, where {@link ProgramRunStatus#ALL} matches any status
+   * @param startTime the start of the time range, in seconds
+   * @param endTime the end of the time range, in seconds
+   */
+  public synchronized List<RunRecord> getRuns(ProgramId program, String status, long startTime, long endTime) {
+    List<RunRecord> result = new ArrayList<>();
+    ProgramRuns runs = programs.get(program);
+    if (runs == null) {
+      return result;
+    }
+    for (RunRecord run : runs.runs.values()) {
+      if ((ProgramRunStatus.ALL.name().equals(status) || run.getStatus().name().equals(status))
+        && run.getStartTs() >= startTime && run.getStartTs() <= endTime) {
+        result.add(run);
+      }
+    }
+    result.sort(NEWEST_FIRST);
+    return result;
+  }
+
+  /**
+   * @return the number of cached runs of a program with the given status
+   */
+  public int countRuns(ProgramId program, ProgramRunStatus status) {
+    return getRuns(program, status.name(), 0, Long.MAX_VALUE).size();
+  }
+
+  /**
+   * Discards the cached runs of a program, so that the next refresh fetches all of its runs.
+   */
+  public synchronized void invalidate(ProgramId program) {
+    programs.remove(program);
+  }
+
+  private List<RunRecord> fetchRuns(ProgramId program, long startTs) throws Exception {
+    return programClient.getProgramRuns(program, ProgramRunStatus.ALL.name(), startTs, Long.MAX_VALUE,
+                                        Integer.MAX_VALUE);
+  }
+
+  /**
+   * Runs of one program, by run id.
+   */
+  private static final class ProgramRuns {
+    private final Map<String, RunRecord> runs = new LinkedHashMap<>();
+    private long newestStartTs;
+
+    /**
+     * Updates the runs with the runs fetched from the given start time.
+     *
+     * @return whether all cached runs which started from that time were fetched, which is not the case if they were
+     *         deleted on the server. The runs are not updated in that case.
+     */
+    boolean update(List<RunRecord> fetched, long fetchStartTs) {
+      Set<String> fetchedIds = new HashSet<>();
+      for (RunRecord run : fetched) {
+        fetchedIds.add(run.getPid());
+      }
+      for (RunRecord run : runs.values()) {
+        if (run.getStartTs() >= fetchStartTs && !fetchedIds.contains(run.getPid())) {
+          return false;
+        }
+      }
+      for (RunRecord run : fetched) {
+        runs.put(run.getPid(), run);
+        newestStartTs = Math.max(newestStartTs, run.getStartTs());
+      }
+      return true;
+    }
+
+    /**
+     * @return the start time from which runs have to be fetched, in seconds
+     */
+    long getFetchStartTs() {
+      long fetchStartTs = Math.max(0, newestStartTs - LATE_RUN_WINDOW_SECONDS);
+      for (RunRecord run : runs.values()) {
+        if (!run.getStatus().isEndState()) {
+          fetchStartTs = Math.min(fetchStartTs, run.getStartTs());
+        }
+      }
+      return fetchStartTs;
+    }
+  }
+}
@@ -16,7 +16,15 @@
 
 package io.cdap.cdap.test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -35,6 +43,10 @@ public final class Tasks {
    * Calls callable, waiting sleepDelay between each call,
    * until it returns the desiredValue or the timeout has passed.
    *
+   * The calls are scheduled by the shared {@link WaitScheduler} with a {@link WaitScheduler.Backoff#fixed} backoff,
+   * and run on its threads while the calling thread blocks, so that the time waited is recorded with the statistics
+   * of the scheduler. If the calling thread is itself a thread of the scheduler, the callable is called on it instead.
+   *
    * @param desiredValue the desired value to get from callable
    * @param callable the callable to check
    * @param timeout time until we timeout
@@ -44,13 +56,28 @@ public final class Tasks {
    * @param message an optional message for the {@link TimeoutException}
    * @param <T> type of desiredValue
    * @throws TimeoutException if timeout has passed, but didn't get the desiredValue
-   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws InterruptedException if something interrupted this waiting operation, which stops calling the callable
    * @throws ExecutionException if there was an exception in calling the callable
    */
   public static <T> void waitFor(T desiredValue, Callable<T> callable, long timeout, TimeUnit timeoutUnit,
                                  long sleepDelay, TimeUnit sleepDelayUnit, @Nullable String message)
     throws TimeoutException, InterruptedException, ExecutionException {
+    if (WaitScheduler.get().isProbeThread()) {
+      // waiting for the probes of another wait could take all threads of the scheduler
+      waitOnCallingThread(desiredValue, callable, timeout, timeoutUnit, sleepDelay, sleepDelayUnit, message);
+      return;
+    }
+    awaitResult(waitForAsync(desiredValue, callable, timeout, timeoutUnit,
+                             WaitScheduler.Backoff.fixed(sleepDelay, sleepDelayUnit), message));
+  }
 
+  /**
+   * Calls callable on the calling thread, sleeping sleepDelay between each call, like {@link #waitFor}.
+   */
+  private static <T> void waitOnCallingThread(T desiredValue, Callable<T> callable, long timeout,
+                                              TimeUnit timeoutUnit, long sleepDelay, TimeUnit sleepDelayUnit,
+                                              @Nullable String message)
+    throws TimeoutException, InterruptedException, ExecutionException {
     long sleepDelayMs = sleepDelayUnit.toMillis(sleepDelay);
     long startTime = System.currentTimeMillis();
     long timeoutMs = timeoutUnit.toMillis(timeout);
@@ -72,6 +99,260 @@ public final class Tasks {
     throw new TimeoutException(message);
   }
 
+  /**
+   * Calls callable until it returns the desiredValue or the timeout has passed, without blocking the calling thread.
+   * The delays between calls follow the given backoff. The callable runs on the threads of the shared
+   * {@link WaitScheduler}, which records the time each caller waited for, so it should return quickly.
+   *
+   * @param desiredValue the desired value to get from callable
+   * @param callable the callable to check
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @param backoff the delays between calls to callable
+   * @param message an optional message for the {@link TimeoutException}
+   * @param <T> type of desiredValue
+   * @return a future which completes with the desiredValue, or fails with a {@link TimeoutException} if the timeout
+   *         has passed or with the exception thrown by the callable. Cancelling it stops calling the callable.
+   */
+  public static <T> CompletableFuture<T> waitForAsync(final T desiredValue, Callable<T> callable, long timeout,
+                                                      TimeUnit timeoutUnit, WaitScheduler.Backoff backoff,
+                                                      @Nullable final String message) {
+    return WaitScheduler.get().waitFor(
+      message == null ? getCallerName() : message, callable, desiredValue::equals, timeout, timeoutUnit, backoff,
+      actualValue -> message == null
+        ? String.format("Timeout occurred. Expected %s but found %s.", desiredValue, actualValue)
+        : message);
+  }
+
+  /**
+   * Calls all callables concurrently, each until it returns the desiredValue, sharing one timeout. Like
+   * {@link #waitForAsync}, the calls are scheduled by the shared {@link WaitScheduler}, so waiting for many
+   * conditions takes about as long as waiting for the slowest of them.
+   *
+   * @param desiredValue the desired value to get from each callable
+   * @param callables the callables to check, by the name of the condition they check
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @param sleepDelay time to wait between calls to each callable
+   * @param sleepDelayUnit unit of time for sleepDelay
+   * @param <T> type of desiredValue
+   * @throws TimeoutException if timeout has passed, but some callables didn't return the desiredValue. Its message
+   *                          names these conditions and the last value of each.
+   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws ExecutionException if there was an exception in calling one of the callables
+   */
+  public static <T> void waitForAll(T desiredValue, Map<String, ? extends Callable<T>> callables, long timeout,
+                                    TimeUnit timeoutUnit, long sleepDelay, TimeUnit sleepDelayUnit)
+    throws TimeoutException, InterruptedException, ExecutionException {
+    Map<String, CompletableFuture<T>> waits = startWaits(desiredValue, callables, timeout, timeoutUnit,
+                                                         sleepDelay, sleepDelayUnit);
+    // stop waiting for the others as soon as a callable fails, since they can't all succeed anymore
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    for (CompletableFuture<T> wait : waits.values()) {
+      wait.whenComplete((value, failure) -> {
+        if (failure != null && !(failure instanceof TimeoutException)) {
+          failed.complete(null);
+        }
+      });
+    }
+    await(CompletableFuture.anyOf(CompletableFuture.allOf(toArray(waits.values())), failed), waits.values());
+    throwFailures(waits);
+  }
+
+  /**
+   * Calls all callables concurrently in rounds, until they all return the desiredValue in the same round or the
+   * timeout has passed. Unlike {@link #waitForAll}, a callable which returned the desiredValue is called again in the
+   * following rounds, so that the conditions are all seen met at about the same time. A round starts sleepDelay after
+   * the previous one completed.
+   *
+   * @param desiredValue the desired value to get from all callables at once
+   * @param callables the callables to check, by the name of the condition they check
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @param sleepDelay time to wait between rounds of calls
+   * @param sleepDelayUnit unit of time for sleepDelay
+   * @param <T> type of desiredValue
+   * @throws TimeoutException if timeout has passed, but some callables didn't return the desiredValue in the last
+   *                          round. Its message names these conditions and the value of each.
+   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws ExecutionException if there was an exception in calling one of the callables
+   */
+  public static <T> void waitForAllAtOnce(final T desiredValue, Map<String, ? extends Callable<T>> callables,
+                                          long timeout, TimeUnit timeoutUnit, long sleepDelay,
+                                          TimeUnit sleepDelayUnit)
+    throws TimeoutException, InterruptedException, ExecutionException {
+    final List<String> names = new ArrayList<>(callables.keySet());
+    awaitResult(WaitScheduler.get().waitForAllAtOnce(
+      getCallerName(), new ArrayList<>(callables.values()), desiredValue::equals, timeout, timeoutUnit,
+      WaitScheduler.Backoff.fixed(sleepDelay, sleepDelayUnit), values -> {
+        List<String> unmet = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+          if (!desiredValue.equals(values.get(i))) {
+            unmet.add(String.format("%s: expected %s but found %s", names.get(i), desiredValue, values.get(i)));
+          }
+        }
+        return String.format("Timeout occurred. %d of %d conditions were not met at once: %s",
+                             unmet.size(), names.size(), unmet);
+      }));
+  }
+
+  /**
+   * Calls all callables concurrently, each until it returns the desiredValue, until one of them returns it or the
+   * shared timeout has passed. The calls are scheduled like in {@link #waitForAll}.
+   *
+   * @param desiredValue the desired value to get from one of the callables
+   * @param callables the callables to check, by the name of the condition they check
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @param sleepDelay time to wait between calls to each callable
+   * @param sleepDelayUnit unit of time for sleepDelay
+   * @param <T> type of desiredValue
+   * @return the name of the first condition which was met
+   * @throws TimeoutException if timeout has passed, but no callable returned the desiredValue. Its message names all
+   *                          conditions and the last value of each.
+   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws ExecutionException if no callable returned the desiredValue, and there was an exception in calling one
+   *                            of them
+   */
+  public static <T> String waitForAny(T desiredValue, Map<String, ? extends Callable<T>> callables, long timeout,
+                                      TimeUnit timeoutUnit, long sleepDelay, TimeUnit sleepDelayUnit)
+    throws TimeoutException, InterruptedException, ExecutionException {
+    Map<String, CompletableFuture<T>> waits = startWaits(desiredValue, callables, timeout, timeoutUnit,
+                                                         sleepDelay, sleepDelayUnit);
+    CompletableFuture<String> first = new CompletableFuture<>();
+    for (Map.Entry<String, CompletableFuture<T>> wait : waits.entrySet()) {
+      wait.getValue().thenRun(() -> first.complete(wait.getKey()));
+    }
+    // a failed or timed out condition doesn't end the wait, unless all of them failed or timed out
+    CompletableFuture.allOf(toArray(waits.values())).whenComplete((value, failure) -> first.complete(findMet(waits)));
+    await(first, waits.values());
+    String met = first.getNow(null);
+    if (met != null) {
+      cancelAll(waits.values());
+      return met;
+    }
+    throwFailures(waits);
+    throw new IllegalStateException("No condition was met, but none of them failed or timed out");
+  }
+
+  @Nullable
+  private static String findMet(Map<String, ? extends CompletableFuture<?>> waits) {
+    for (Map.Entry<String, ? extends CompletableFuture<?>> wait : waits.entrySet()) {
+      if (wait.getValue().isDone() && !wait.getValue().isCompletedExceptionally()) {
+        return wait.getKey();
+      }
+    }
+    return null;
+  }
+
+  private static <T> Map<String, CompletableFuture<T>> startWaits(final T desiredValue,
+                                                                  Map<String, ? extends Callable<T>> callables,
+                                                                  long timeout, TimeUnit timeoutUnit,
+                                                                  long sleepDelay, TimeUnit sleepDelayUnit) {
+    String caller = getCallerName();
+    Map<String, CompletableFuture<T>> waits = new LinkedHashMap<>();
+    for (final Map.Entry<String, ? extends Callable<T>> callable : callables.entrySet()) {
+      waits.put(callable.getKey(), WaitScheduler.get().waitFor(
+        caller + "[" + callable.getKey() + "]", callable.getValue(), desiredValue::equals, timeout, timeoutUnit,
+        WaitScheduler.Backoff.fixed(sleepDelay, sleepDelayUnit),
+        actualValue -> String.format("%s: expected %s but found %s", callable.getKey(), desiredValue, actualValue)));
+    }
+    return waits;
+  }
+
+  /**
+   * Waits for the result of a single wait, cancelling it if interrupted, and rethrows its failure like
+   * {@link #waitFor} throws it.
+   */
+  private static void awaitResult(CompletableFuture<?> wait)
+    throws TimeoutException, InterruptedException, ExecutionException {
+    try {
+      wait.get();
+    } catch (InterruptedException e) {
+      wait.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof TimeoutException) {
+        // thrown again, so that its stack trace is the one of the caller rather than of the scheduler
+        throw new TimeoutException(e.getCause().getMessage());
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for a future which completes once the given waits are done, cancelling the waits if interrupted.
+   */
+  private static void await(CompletableFuture<?> future,
+                            Collection<? extends CompletableFuture<?>> waits) throws InterruptedException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      cancelAll(waits);
+      throw e;
+    } catch (ExecutionException e) {
+      // the failures of the waits are examined by the caller
+    }
+  }
+
+  /**
+   * Throws the first failure among the given waits, after cancelling the ones which are not done yet. If they all
+   * timed out or succeeded, throws a {@link TimeoutException} naming the ones which timed out.
+   */
+  private static void throwFailures(Map<String, ? extends CompletableFuture<?>> waits)
+    throws TimeoutException, ExecutionException {
+    cancelAll(waits.values());
+    List<String> unmet = new ArrayList<>();
+    for (CompletableFuture<?> wait : waits.values()) {
+      Throwable failure = getFailure(wait);
+      if (failure instanceof TimeoutException) {
+        unmet.add(failure.getMessage());
+      } else if (failure != null && !(failure instanceof CancellationException)) {
+        throw new ExecutionException(failure);
+      }
+    }
+    if (!unmet.isEmpty()) {
+      throw new TimeoutException(String.format("Timeout occurred. %d of %d conditions were not met: %s",
+                                               unmet.size(), waits.size(), unmet));
+    }
+  }
+
+  @Nullable
+  private static Throwable getFailure(CompletableFuture<?> future) {
+    try {
+      future.getNow(null);
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    } catch (CancellationException e) {
+      return e;
+    }
+  }
+
+  private static void cancelAll(Collection<? extends CompletableFuture<?>> waits) {
+    for (CompletableFuture<?> wait : waits) {
+      wait.cancel(true);
+    }
+  }
+
+  private static CompletableFuture<?>[] toArray(Collection<? extends CompletableFuture<?>> futures) {
+    return futures.toArray(new CompletableFuture<?>[futures.size()]);
+  }
+
+  /**
+   * Returns the name of the code that waits, which is the first caller outside of this class.
+   */
+  private static String getCallerName() {
+    for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+      String className = element.getClassName();
+      if (!className.equals(Tasks.class.getName()) && !className.equals(Thread.class.getName())) {
+        return String.format("%s.%s:%d", className.substring(className.lastIndexOf('.') + 1),
+                             element.getMethodName(), element.getLineNumber());
+      }
+    }
+    return "unknown";
+  }
+
   /**
    * Calls callable, waiting sleepDelay between each call,
    * until it returns the desiredValue or the timeout has passed.
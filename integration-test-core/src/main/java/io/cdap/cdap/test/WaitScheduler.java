@@ -0,0 +1,341 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Waits for many conditions at once, each exposed as a {@link CompletableFuture}. A single scheduler thread times
+ * the probes of all waits, which run on a bounded pool of threads, so that no thread sleeps on behalf of a wait.
+ * The delay between the probes of a wait grows according to its {@link Backoff}. The time each named condition took to
+ * be satisfied is recorded in its {@link WaitStats}.
+ *
+ * The callables of all waits share the threads of the pool, so they should return quickly, and must not wait for
+ * other waits of this scheduler, except through {@link Tasks#waitFor}, which probes on the calling thread when it is
+ * called by a probe. They don't run on the thread of the caller, so they don't see its thread locals. Cancelling a
+ * wait stops scheduling its probes, but does not interrupt a probe which is running.
+ *
+ * Only depends on the JDK, like {@link Tasks}, so that it can be used within programs.
+ */
+public final class WaitScheduler {
+
+  // maximum number of probes that run at the same time. Further probes are queued until a thread is free.
+  private static final int MAX_PROBE_THREADS = 32;
+  private static final WaitScheduler SHARED = new WaitScheduler();
+  private static final ThreadLocal<Boolean> PROBE_THREAD = ThreadLocal.withInitial(() -> false);
+
+  private final ScheduledExecutorService scheduler =
+    Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("wait-scheduler"));
+  private final ThreadPoolExecutor probes =
+    new ThreadPoolExecutor(MAX_PROBE_THREADS, MAX_PROBE_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                           daemonThreadFactory("wait-probe"));
+  private final ConcurrentMap<String, WaitStats> stats = new ConcurrentHashMap<>();
+
+  private WaitScheduler() {
+    probes.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * @return the scheduler shared by all waits of this JVM
+   */
+  public static WaitScheduler get() {
+    return SHARED;
+  }
+
+  /**
+   * Calls a callable until it returns a value that satisfies a condition, or until the timeout has passed.
+   *
+   * @param name name of the condition, under which the time to satisfy it is recorded
+   * @param timeoutMessage creates the message of the {@link TimeoutException} from the last value returned by the
+   *                       callable, or {@code null} for a default message
+   * @return a future that completes with the value which satisfied the condition. It fails with a
+   *         {@link TimeoutException} if the timeout passed, or with the exception thrown by the callable. Cancelling
+   *         it stops calling the callable.
+   */
+  public <T> CompletableFuture<T> waitFor(String name, Callable<T> callable, Predicate<? super T> condition,
+                                          long timeout, TimeUnit timeoutUnit, Backoff backoff,
+                                          @Nullable Function<? super T, String> timeoutMessage) {
+    return start(new Wait<>(name, () -> call(callable), condition, System.nanoTime() + timeoutUnit.toNanos(timeout),
+                            backoff, timeoutMessage));
+  }
+
+  /**
+   * Calls all callables concurrently in rounds, until they all return a value that satisfies a condition in the
+   * same round, or until the timeout has passed. A round starts once the previous one completed, after the delay of
+   * the backoff.
+   *
+   * @param name name of the condition, under which the time to satisfy it is recorded
+   * @param timeoutMessage creates the message of the {@link TimeoutException} from the values returned by the
+   *                       callables in the last round, in their order, or {@code null} for a default message
+   * @return a future that completes with the values of the round which satisfied the condition, in the order of the
+   *         callables. It fails like the future of {@link #waitFor}, with the exception thrown by one of the
+   *         callables.
+   */
+  public <T> CompletableFuture<List<T>> waitForAllAtOnce(String name, List<? extends Callable<T>> callables,
+                                                         Predicate<? super T> condition, long timeout,
+                                                         TimeUnit timeoutUnit, Backoff backoff,
+                                                         @Nullable Function<? super List<T>, String> timeoutMessage) {
+    Supplier<CompletableFuture<List<T>>> round = () -> {
+      List<CompletableFuture<T>> calls = new ArrayList<>();
+      for (Callable<T> callable : callables) {
+        calls.add(call(callable));
+      }
+      return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[calls.size()])).thenApply(ignored -> {
+        List<T> values = new ArrayList<>();
+        for (CompletableFuture<T> value : calls) {
+          values.add(value.join());
+        }
+        return values;
+      });
+    };
+    Predicate<List<T>> allSatisfied = values -> values.stream().allMatch(condition);
+    return start(new Wait<>(name, round, allSatisfied, System.nanoTime() + timeoutUnit.toNanos(timeout), backoff,
+                            timeoutMessage));
+  }
+
+  /**
+   * @return whether the current thread is one that runs the probes of this scheduler. A probe which waits for
+   *         another wait of the scheduler holds a thread that the other wait may need.
+   */
+  boolean isProbeThread() {
+    return PROBE_THREAD.get();
+  }
+
+  /**
+   * @return the statistics of each named condition, sorted by name
+   */
+  public Map<String, WaitStats> getStats() {
+    return new TreeMap<>(stats);
+  }
+
+  private <T> CompletableFuture<T> start(Wait<T> wait) {
+    if (wait.backoff.fastFirstProbe) {
+      probe(wait);
+    } else {
+      schedule(wait);
+    }
+    return wait.future;
+  }
+
+  /**
+   * Calls a callable on the threads of the probes.
+   */
+  private <T> CompletableFuture<T> call(Callable<T> callable) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    probes.execute(() -> {
+      PROBE_THREAD.set(true);
+      try {
+        result.complete(callable.call());
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      }
+    });
+    return result;
+  }
+
+  private <T> void probe(final Wait<T> wait) {
+    if (wait.future.isDone()) {
+      // cancelled
+      return;
+    }
+    CompletableFuture<T> probe;
+    try {
+      probe = wait.probe.get();
+    } catch (Throwable t) {
+      probe = new CompletableFuture<>();
+      probe.completeExceptionally(t);
+    }
+    probe.whenComplete((value, failure) -> {
+      if (failure != null) {
+        getStats(wait.name).recordFailure(System.nanoTime() - wait.startTime, wait.attempts + 1);
+        wait.future.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+        return;
+      }
+      wait.attempts++;
+      if (wait.condition.test(value)) {
+        getStats(wait.name).recordSatisfied(System.nanoTime() - wait.startTime, wait.attempts);
+        wait.future.complete(value);
+      } else if (System.nanoTime() - wait.deadline >= 0) {
+        getStats(wait.name).recordTimeout(System.nanoTime() - wait.startTime, wait.attempts);
+        String message = wait.timeoutMessage == null
+          ? String.format("Timeout occurred waiting for %s. Last value was %s.", wait.name, value)
+          : wait.timeoutMessage.apply(value);
+        wait.future.completeExceptionally(new TimeoutException(message));
+      } else {
+        schedule(wait);
+      }
+    });
+  }
+
+  private <T> void schedule(final Wait<T> wait) {
+    long delay = Math.max(0, Math.min(wait.backoff.getDelayNanos(wait.attempts), wait.deadline - System.nanoTime()));
+    scheduler.schedule(() -> probe(wait), delay, TimeUnit.NANOSECONDS);
+  }
+
+  private WaitStats getStats(String name) {
+    return stats.computeIfAbsent(name, key -> new WaitStats());
+  }
+
+  private static ThreadFactory daemonThreadFactory(final String prefix) {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Delays between the probes of a wait. The delay starts at an initial delay, and doubles after every probe up to a
+   * maximum delay. Each delay is spread randomly by a fraction of itself, so that waits which started together do
+   * not probe together.
+   */
+  public static final class Backoff {
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final double jitter;
+    private final boolean fastFirstProbe;
+
+    /**
+     * @param jitter the fraction of each delay by which it is spread, between 0 and 1
+     * @param fastFirstProbe whether to probe as soon as the wait starts, rather than after the initial delay
+     */
+    public Backoff(long initialDelay, long maxDelay, TimeUnit unit, double jitter, boolean fastFirstProbe) {
+      if (initialDelay < 0 || maxDelay < initialDelay || jitter < 0 || jitter > 1) {
+        throw new IllegalArgumentException(String.format("Invalid backoff: initial delay %d, max delay %d, jitter %f",
+                                                         initialDelay, maxDelay, jitter));
+      }
+      this.initialDelayNanos = unit.toNanos(initialDelay);
+      this.maxDelayNanos = unit.toNanos(maxDelay);
+      this.jitter = jitter;
+      this.fastFirstProbe = fastFirstProbe;
+    }
+
+    /**
+     * Returns the backoff which probes right away, then waits the same delay between all probes, like
+     * {@link Tasks#waitFor}.
+     */
+    public static Backoff fixed(long delay, TimeUnit unit) {
+      return new Backoff(delay, delay, unit, 0, true);
+    }
+
+    long getDelayNanos(int attempts) {
+      long delay = initialDelayNanos;
+      for (int i = 1; i < attempts && delay < maxDelayNanos; i++) {
+        delay *= 2;
+      }
+      delay = Math.min(delay, maxDelayNanos);
+      return (long) (delay * (1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1)));
+    }
+  }
+
+  /**
+   * Time that a named condition took to be satisfied, over all waits for it.
+   */
+  public static final class WaitStats {
+    private int satisfied;
+    private int timeouts;
+    private int failures;
+    private long probes;
+    private long totalNanos;
+    private long maxNanos;
+
+    synchronized void recordSatisfied(long nanos, int attempts) {
+      satisfied++;
+      record(nanos, attempts);
+    }
+
+    synchronized void recordTimeout(long nanos, int attempts) {
+      timeouts++;
+      record(nanos, attempts);
+    }
+
+    synchronized void recordFailure(long nanos, int attempts) {
+      failures++;
+      record(nanos, attempts);
+    }
+
+    private void record(long nanos, int attempts) {
+      probes += attempts;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * @return the total time spent waiting for the condition, in milliseconds
+     */
+    public synchronized long getTotalMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+      int waits = satisfied + timeouts + failures;
+      return String.format("waits=%d satisfied=%d timeouts=%d failures=%d probes=%d totalMs=%d avgMs=%d maxMs=%d",
+                           waits, satisfied, timeouts, failures, probes, TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                           waits == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / waits),
+                           TimeUnit.NANOSECONDS.toMillis(maxNanos));
+    }
+  }
+
+  /**
+   * State of one wait. Its probes run one after the other, so the state is only accessed by one thread at a time.
+   */
+  private static final class Wait<T> {
+    private final String name;
+    // starts a probe, and returns the value it will produce
+    private final Supplier<CompletableFuture<T>> probe;
+    private final Predicate<? super T> condition;
+    private final long startTime = System.nanoTime();
+    private final long deadline;
+    private final Backoff backoff;
+    private final Function<? super T, String> timeoutMessage;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private int attempts;
+
+    Wait(String name, Supplier<CompletableFuture<T>> probe, Predicate<? super T> condition, long deadline,
+         Backoff backoff, @Nullable Function<? super T, String> timeoutMessage) {
+      this.name = name;
+      this.probe = probe;
+      this.condition = condition;
+      this.deadline = deadline;
+      this.backoff = backoff;
+      this.timeoutMessage = timeoutMessage;
+    }
+  }
+}
@@ -49,11 +49,18 @@ import java.util.regex.Pattern;
 
 /**
  * Use this test {@link Runner} to automatically discover test classes to run.
+ *
+ * Test classes run one after another, unless the {@code suite.parallelism} system property is set to more than one.
+ * Up to that many test classes then run at the same time, as long as they don't share any resource declared by
+ * their {@link SharedResources} annotation. Test classes without the annotation are assumed to share everything,
+ * and run alone.
  */
 public class AutoSuiteRunner extends ParentRunner<Runner> {
 
   private final List<Runner> children;
   private static final String TESTS_TO_RUN = "long.test";
+  // maximum number of test classes to run at the same time
+  private static final String PARALLELISM = "suite.parallelism";
 
   /**
    * The <code>SuitePackages</code> annotation specifies the packages to discover test classes to run.
@@ -73,6 +80,27 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
     String pattern() default ".*Test$";
   }
 
+  /**
+   * The <code>SharedResources</code> annotation declares the resources that a test class uses, which other test
+   * classes may use too. Test classes which share a resource never run at the same time. A test class which declares
+   * no resource can run at the same time as any other test class.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface SharedResources {
+    /**
+     * Resource which all test classes share, for test classes which must run alone. For example, a test class which
+     * restarts services of the cluster.
+     */
+    String ALL = "*";
+
+    /**
+     * returns the names of the resources, e.g. the namespace that the test class uses
+     */
+    String[] value();
+  }
+
   public AutoSuiteRunner(Class<?> testClass, final RunnerBuilder runnerBuilder) throws Throwable {
     super(testClass);
 
@@ -106,6 +134,13 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
     }
 
     this.children = runners;
+
+    int parallelism = Integer.parseInt(System.getProperty(PARALLELISM, "1"));
+    if (parallelism > 1) {
+      // children then report their tests from many threads, which RunNotifier supports by synchronizing the
+      // notifications of listeners that are not thread safe
+      setScheduler(new SharedResourcesScheduler(parallelism, () -> getDescription().getChildren()));
+    }
   }
 
   private String createRegex(String testsToRun) {
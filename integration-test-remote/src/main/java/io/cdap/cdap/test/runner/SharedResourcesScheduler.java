@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import org.junit.runner.Description;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@link RunnerScheduler} which runs the children of a suite concurrently on a fixed number of threads, never running
+ * two children which share a resource declared by their {@link AutoSuiteRunner.SharedResources} annotation at the same
+ * time. Children without the annotation run alone.
+ *
+ * Children start in their order within the suite, except that a child which has to wait for a resource lets later
+ * children start first. A child which has to run alone doesn't let later children start, so that it isn't delayed
+ * forever.
+ */
+final class SharedResourcesScheduler implements RunnerScheduler {
+
+  private final int parallelism;
+  // the descriptions of the children of the suite, in the order in which the suite schedules them
+  private final Supplier<List<Description>> descriptions;
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private final Set<String> usedResources = new HashSet<>();
+  private int running;
+  private Throwable failure;
+
+  SharedResourcesScheduler(int parallelism, Supplier<List<Description>> descriptions) {
+    this.parallelism = parallelism;
+    this.descriptions = descriptions;
+  }
+
+  @Override
+  public void schedule(Runnable childStatement) {
+    scheduled.add(childStatement);
+  }
+
+  @Override
+  public void finished() {
+    List<Description> childDescriptions = descriptions.get();
+    Preconditions.checkState(childDescriptions.size() == scheduled.size(),
+                             "Scheduled %s children, but the suite has %s", scheduled.size(), childDescriptions.size());
+    LinkedList<Child> pending = new LinkedList<>();
+    for (int i = 0; i < scheduled.size(); i++) {
+      pending.add(new Child(scheduled.get(i), childDescriptions.get(i)));
+    }
+    scheduled.clear();
+
+    final AtomicInteger threads = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "suite-runner-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      synchronized (this) {
+        while (!pending.isEmpty() || running > 0) {
+          Iterator<Child> iterator = pending.iterator();
+          while (iterator.hasNext() && running < parallelism) {
+            final Child child = iterator.next();
+            if (!canStart(child)) {
+              if (child.resources.contains(AutoSuiteRunner.SharedResources.ALL)) {
+                break;
+              }
+              continue;
+            }
+            iterator.remove();
+            running++;
+            usedResources.addAll(child.resources);
+            executor.execute(() -> run(child));
+          }
+          wait();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure != null) {
+      throw Throwables.propagate(failure);
+    }
+  }
+
+  private boolean canStart(Child child) {
+    if (usedResources.contains(AutoSuiteRunner.SharedResources.ALL)) {
+      return false;
+    }
+    if (child.resources.contains(AutoSuiteRunner.SharedResources.ALL)) {
+      return running == 0;
+    }
+    return Collections.disjoint(usedResources, child.resources);
+  }
+
+  private void run(Child child) {
+    Throwable childFailure = null;
+    try {
+      child.statement.run();
+    } catch (Throwable t) {
+      childFailure = t;
+    }
+    synchronized (this) {
+      if (childFailure != null && failure == null) {
+        failure = childFailure;
+      }
+      running--;
+      usedResources.removeAll(child.resources);
+      notifyAll();
+    }
+  }
+
+  /**
+   * A child of the suite to run, with the resources that it uses.
+   */
+  private static final class Child {
+    private final Runnable statement;
+    private final Set<String> resources;
+
+    Child(Runnable statement, Description description) {
+      this.statement = statement;
+      AutoSuiteRunner.SharedResources sharedResources =
+        description.getAnnotation(AutoSuiteRunner.SharedResources.class);
+      this.resources = sharedResources == null
+        ? Collections.singleton(AutoSuiteRunner.SharedResources.ALL)
+        : new HashSet<>(Arrays.asList(sharedResources.value()));
+    }
+  }
+}
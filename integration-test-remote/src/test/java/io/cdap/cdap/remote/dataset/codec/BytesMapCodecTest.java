@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.remote.dataset.SortedBytesMap;
+import io.cdap.cdap.remote.dataset.SortedBytesMapDeserializer;
+import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
+import io.cdap.cdap.remote.dataset.table.TableFormats;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tests that the binary and JSON codecs decode a {@code Map<byte[], byte[]>} the same way, including its entries
+ * with a {@code null} value.
+ */
+public class BytesMapCodecTest {
+
+  private static final Codec BINARY_CODEC = TableFormats.createBinaryCodec();
+  // configured like the Gson of the dataset clients
+  private static final Codec JSON_CODEC = new JsonCodec(
+    new GsonBuilder()
+      .enableComplexMapKeySerialization()
+      .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
+      .registerTypeAdapter(TableFormats.COLUMNS_TYPE, new SortedBytesMapDeserializer())
+      .create());
+
+  @Test
+  public void testBinary() throws Exception {
+    testRoundTrip(BINARY_CODEC);
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    testRoundTrip(JSON_CODEC);
+  }
+
+  private static void testRoundTrip(Codec codec) throws Exception {
+    Map<byte[], byte[]> map = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    Assert.assertTrue(roundTrip(codec, map).isEmpty());
+
+    map.put(Bytes.toBytes("b"), Bytes.toBytes("2"));
+    map.put(Bytes.toBytes("a"), Bytes.toBytes("1"));
+    Map<byte[], byte[]> decoded = roundTrip(codec, map);
+    Assert.assertTrue(decoded instanceof SortedBytesMap);
+    assertMapEquals(map, decoded);
+
+    // a null value is kept, which a SortedBytesMap cannot do
+    map.put(Bytes.toBytes("c"), null);
+    decoded = roundTrip(codec, map);
+    Assert.assertTrue(decoded.containsKey(Bytes.toBytes("c")));
+    assertMapEquals(map, decoded);
+  }
+
+  private static Map<byte[], byte[]> roundTrip(Codec codec, Map<byte[], byte[]> map) throws Exception {
+    return codec.decode(codec.encode(map, TableFormats.COLUMNS_TYPE), TableFormats.COLUMNS_TYPE);
+  }
+
+  private static void assertMapEquals(Map<byte[], byte[]> expected, Map<byte[], byte[]> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (Map.Entry<byte[], byte[]> entry : expected.entrySet()) {
+      Assert.assertTrue(actual.containsKey(entry.getKey()));
+      Assert.assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+    }
+  }
+}
@@ -19,8 +19,10 @@ package io.cdap.cdap.remote.dataset.test;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.dataset.DatasetProperties;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
 import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
@@ -28,6 +30,8 @@ import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
 import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.remote.dataset.cube.DeleteResult;
+import io.cdap.cdap.remote.dataset.cube.RemoteCube;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.DataSetManager;
 import org.junit.Assert;
@@ -35,8 +39,11 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -148,4 +155,275 @@ public class RemoteCubeTest extends AudiTestBase {
     Assert.assertEquals(tsInSec, timeValue.getTimestamp());
     Assert.assertEquals(3, timeValue.getValue());
   }
+
+  @Test
+  public void testBuffered() throws Exception {
+    DatasetProperties props = DatasetProperties.builder()
+      .add("dataset.cube.resolutions", "1")
+      .add("dataset.cube.aggregation.agg1.dimensions", "user")
+      .add("dataset.cube.aggregation.agg1.requiredDimensions", "user").build();
+    addDatasetInstance(TEST_NAMESPACE, Cube.class.getName(), "bufferedCube", props);
+
+    System.setProperty(RemoteCube.BUFFER_SIZE, "10");
+    System.setProperty(RemoteCube.MAX_PENDING_BATCHES, "2");
+    try {
+      // the cube client is created with the buffer size that is currently configured
+      DataSetManager<Cube> cubeManager = getCubeDataset("bufferedCube");
+      Cube cube = cubeManager.get();
+
+      long tsInSec = System.currentTimeMillis() / 1000;
+      // facts of the same second are merged on the client, which sends several batches of them
+      for (int i = 0; i < 100; i++) {
+        cube.add(new CubeFact(tsInSec + i / 5)
+                   .addDimensionValue("user", "alex")
+                   .addMeasurement("count", MeasureType.COUNTER, 1)
+                   .addMeasurement("latest", MeasureType.GAUGE, i));
+      }
+
+      // querying sends the remaining buffered facts first
+      Collection<TimeSeries> data =
+        cube.query(CubeQuery.builder()
+                     .select()
+                     .measurement("count", AggregationFunction.SUM)
+                     .measurement("latest", AggregationFunction.LATEST)
+                     .from(null)
+                     .resolution(1, TimeUnit.SECONDS)
+                     .where()
+                     .dimension("user", "alex")
+                     .timeRange(tsInSec, tsInSec + 20)
+                     .limit(100)
+                     .build());
+      Assert.assertEquals(2, data.size());
+      for (TimeSeries series : data) {
+        List<TimeValue> timeValues = series.getTimeValues();
+        Assert.assertEquals(20, timeValues.size());
+        for (int i = 0; i < 20; i++) {
+          TimeValue timeValue = timeValues.get(i);
+          Assert.assertEquals(tsInSec + i, timeValue.getTimestamp());
+          Assert.assertEquals("count".equals(series.getMeasureName()) ? 5 : 5 * i + 4, timeValue.getValue());
+        }
+      }
+    } finally {
+      System.clearProperty(RemoteCube.BUFFER_SIZE);
+      System.clearProperty(RemoteCube.MAX_PENDING_BATCHES);
+    }
+  }
+
+  @Test
+  public void testAgedFlush() throws Exception {
+    DatasetProperties props = DatasetProperties.builder()
+      .add("dataset.cube.resolutions", "1")
+      .add("dataset.cube.aggregation.agg1.dimensions", "user")
+      .add("dataset.cube.aggregation.agg1.requiredDimensions", "user").build();
+    addDatasetInstance(TEST_NAMESPACE, Cube.class.getName(), "agedCube", props);
+
+    System.setProperty(RemoteCube.BUFFER_SIZE, "10");
+    System.setProperty(RemoteCube.BUFFER_AGE_MS, "100");
+    try {
+      // the cube clients are created with the buffer size and age that are currently configured
+      Cube cube = getCubeDataset("agedCube").get();
+      long tsInSec = System.currentTimeMillis() / 1000;
+      cube.add(new CubeFact(tsInSec).addDimensionValue("user", "alex")
+                 .addMeasurement("count", MeasureType.COUNTER, 1));
+
+      // query through another client, since a query through the same one would send the buffer itself
+      Cube reader = getCubeDataset("agedCube").get();
+      TimeUnit.SECONDS.sleep(2);
+      Assert.assertEquals(1, getValue(reader.query(CubeQuery.builder()
+                                                     .select()
+                                                     .measurement("count", AggregationFunction.SUM)
+                                                     .from(null)
+                                                     .resolution(1, TimeUnit.SECONDS)
+                                                     .where()
+                                                     .dimension("user", "alex")
+                                                     .timeRange(tsInSec - 60, tsInSec + 60)
+                                                     .limit(100)
+                                                     .build())));
+    } finally {
+      System.clearProperty(RemoteCube.BUFFER_SIZE);
+      System.clearProperty(RemoteCube.BUFFER_AGE_MS);
+    }
+  }
+
+  @Test
+  public void testQueryCache() throws Exception {
+    DatasetProperties props = DatasetProperties.builder()
+      .add("dataset.cube.resolutions", "1")
+      .add("dataset.cube.aggregation.agg1.dimensions", "user")
+      .add("dataset.cube.aggregation.agg1.requiredDimensions", "user").build();
+    addDatasetInstance(TEST_NAMESPACE, Cube.class.getName(), "cachedCube", props);
+
+    System.setProperty(RemoteCube.QUERY_CACHE_SIZE, "10");
+    try {
+      // the cube client is created with the cache size that is currently configured
+      RemoteCube cube = (RemoteCube) getCubeDataset("cachedCube").get();
+
+      // facts in the past, so that the queried buckets are closed
+      long tsInSec = System.currentTimeMillis() / 1000 - 600;
+      cube.add(new CubeFact(tsInSec).addDimensionValue("user", "alex")
+                 .addMeasurement("count", MeasureType.COUNTER, 1));
+
+      CubeQuery query = CubeQuery.builder()
+        .select()
+        .measurement("count", AggregationFunction.SUM)
+        .from(null)
+        .resolution(1, TimeUnit.SECONDS)
+        .where()
+        .dimension("user", "alex")
+        .timeRange(tsInSec - 60, tsInSec + 60)
+        .limit(100)
+        .build();
+      Assert.assertEquals(1, getValue(cube.query(query)));
+      Assert.assertEquals(1, getValue(cube.query(query)));
+      Assert.assertEquals(1, cube.getQueryCacheStats().hitCount());
+      Assert.assertEquals(1, cube.getQueryCacheStats().missCount());
+
+      // adding a fact within the time range of the query invalidates its result
+      cube.add(new CubeFact(tsInSec).addDimensionValue("user", "alex")
+                 .addMeasurement("count", MeasureType.COUNTER, 1));
+      Assert.assertEquals(2, getValue(cube.query(query)));
+      Assert.assertEquals(1, cube.getQueryCacheStats().hitCount());
+      Assert.assertEquals(2, cube.getQueryCacheStats().missCount());
+
+      // but adding a fact outside of it does not
+      cube.add(new CubeFact(tsInSec + 120).addDimensionValue("user", "alex")
+                 .addMeasurement("count", MeasureType.COUNTER, 1));
+      Assert.assertEquals(2, getValue(cube.query(query)));
+      Assert.assertEquals(2, cube.getQueryCacheStats().hitCount());
+    } finally {
+      System.clearProperty(RemoteCube.QUERY_CACHE_SIZE);
+    }
+  }
+
+  @Test
+  public void testQueryStreaming() throws Exception {
+    DatasetProperties props = DatasetProperties.builder()
+      .add("dataset.cube.resolutions", "1")
+      .add("dataset.cube.aggregation.agg1.dimensions", "user")
+      .add("dataset.cube.aggregation.agg1.requiredDimensions", "user").build();
+    addDatasetInstance(TEST_NAMESPACE, Cube.class.getName(), "streamedCube", props);
+
+    RemoteCube cube = (RemoteCube) getCubeDataset("streamedCube").get();
+
+    long tsInSec = System.currentTimeMillis() / 1000;
+    List<CubeFact> facts = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      facts.add(new CubeFact(tsInSec).addDimensionValue("user", "user" + i)
+                  .addMeasurement("count", MeasureType.COUNTER, i + 1));
+    }
+    cube.add(facts);
+
+    CubeQuery query = CubeQuery.builder()
+      .select()
+      .measurement("count", AggregationFunction.SUM)
+      .from(null)
+      .resolution(1, TimeUnit.SECONDS)
+      .where()
+      .timeRange(tsInSec - 60, tsInSec + 60)
+      .groupBy()
+      .dimension("user")
+      .limit(100)
+      .build();
+    // series are streamed in the order of the cube, so they are checked by their dimension values
+    Map<String, Long> values = new HashMap<>();
+    try (CloseableIterator<TimeSeries> series = cube.queryStreaming(query)) {
+      while (series.hasNext()) {
+        TimeSeries timeSeries = series.next();
+        values.put(timeSeries.getDimensionValues().get("user"), getValue(Collections.singletonList(timeSeries)));
+      }
+    }
+    Assert.assertEquals(10, values.size());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(Long.valueOf(i + 1), values.get("user" + i));
+    }
+  }
+
+  @Test
+  public void testDelete() throws Exception {
+    DatasetProperties props = DatasetProperties.builder()
+      .add("dataset.cube.resolutions", "1")
+      .add("dataset.cube.aggregation.agg1.dimensions", "user")
+      .add("dataset.cube.aggregation.agg1.requiredDimensions", "user").build();
+    addDatasetInstance(TEST_NAMESPACE, Cube.class.getName(), "deletedCube", props);
+
+    System.setProperty(RemoteCube.DELETE_SLICE_SECONDS, "60");
+    try {
+      // the cube client is created with the slice length that is currently configured
+      RemoteCube cube = (RemoteCube) getCubeDataset("deletedCube").get();
+
+      long tsInSec = System.currentTimeMillis() / 1000;
+      cube.add(ImmutableList.of(new CubeFact(tsInSec).addDimensionValue("user", "alex")
+                                  .addMeasurement("count", MeasureType.COUNTER, 1),
+                                new CubeFact(tsInSec + 300).addDimensionValue("user", "alex")
+                                  .addMeasurement("count", MeasureType.COUNTER, 1)));
+
+      // 20 slices, of which only those with the two facts have rows to delete
+      DeleteResult result = cube.deleteInSlices(
+        new CubeDeleteQuery(tsInSec - 600, tsInSec + 600, Collections.singletonList(1),
+                            ImmutableMap.of("user", "alex"), Collections.singletonList("count")));
+      Assert.assertNull(result.getResumeTs());
+      Assert.assertTrue(result.getDeletedSlices() >= 2);
+      Assert.assertTrue(result.getPrunedSlices() >= 15);
+
+      Collection<TimeSeries> data =
+        cube.query(CubeQuery.builder()
+                     .select()
+                     .measurement("count", AggregationFunction.SUM)
+                     .from(null)
+                     .resolution(1, TimeUnit.SECONDS)
+                     .where()
+                     .dimension("user", "alex")
+                     .timeRange(tsInSec - 600, tsInSec + 600)
+                     .limit(100)
+                     .build());
+      Assert.assertTrue(data.isEmpty());
+    } finally {
+      System.clearProperty(RemoteCube.DELETE_SLICE_SECONDS);
+    }
+  }
+
+  @Test
+  public void testDeleteWithTagPredicate() throws Exception {
+    DatasetProperties props = DatasetProperties.builder()
+      .add("dataset.cube.resolutions", "1")
+      .add("dataset.cube.aggregation.byUser.dimensions", "user")
+      .add("dataset.cube.aggregation.byUser.requiredDimensions", "user")
+      .add("dataset.cube.aggregation.byUserAction.dimensions", "user,action")
+      .add("dataset.cube.aggregation.byUserAction.requiredDimensions", "user,action").build();
+    addDatasetInstance(TEST_NAMESPACE, Cube.class.getName(), "predicateCube", props);
+    RemoteCube cube = (RemoteCube) getCubeDataset("predicateCube").get();
+
+    long tsInSec = System.currentTimeMillis() / 1000;
+    cube.add(ImmutableList.of(new CubeFact(tsInSec).addDimensionValue("user", "alex")
+                                .addDimensionValue("action", "click")
+                                .addMeasurement("count", MeasureType.COUNTER, 1)));
+
+    // only delete from the aggregation by user
+    cube.delete(new CubeDeleteQuery(tsInSec - 60, tsInSec + 60, Collections.singletonList(1),
+                                    ImmutableMap.of("user", "alex"), Collections.singletonList("count"),
+                                    dimensionNames -> dimensionNames.size() == 1));
+
+    // the aggregation by user and action still has the fact
+    Collection<TimeSeries> data =
+      cube.query(CubeQuery.builder()
+                   .select()
+                   .measurement("count", AggregationFunction.SUM)
+                   .from("byUserAction")
+                   .resolution(1, TimeUnit.SECONDS)
+                   .where()
+                   .dimension("user", "alex")
+                   .timeRange(tsInSec - 60, tsInSec + 60)
+                   .groupBy()
+                   .dimension("action")
+                   .limit(100)
+                   .build());
+    Assert.assertEquals(1, getValue(data));
+  }
+
+  private static long getValue(Collection<TimeSeries> data) {
+    Assert.assertEquals(1, data.size());
+    List<TimeValue> timeValues = data.iterator().next().getTimeValues();
+    Assert.assertEquals(1, timeValues.size());
+    return timeValues.get(0).getValue();
+  }
 }
@@ -16,13 +16,24 @@
 
 package io.cdap.cdap.remote.dataset.test;
 
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.remote.dataset.kvtable.AsyncRemoteKeyValueTable;
+import io.cdap.cdap.remote.dataset.kvtable.RemoteKeyValueTable;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.DataSetManager;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Tests {@link io.cdap.cdap.remote.dataset.kvtable.RemoteKeyValueTable}
@@ -59,4 +70,188 @@ public class RemoteKeyValueTest extends AudiTestBase {
     kvTable.delete(a);
     Assert.assertEquals(null, kvTable.read(a));
   }
+
+  @Test
+  public void testIncrements() throws Exception {
+    DataSetManager<KeyValueTable> kvTableManager = getKVTableDataset("kvIncrementTable");
+    KeyValueTable kvTable = kvTableManager.get();
+
+    byte[] a = "a".getBytes();
+    byte[] b = "b".getBytes();
+    for (int i = 0; i < 100; i++) {
+      kvTable.increment(a, 1);
+      kvTable.increment(b, 2);
+    }
+    kvTableManager.flush();
+
+    Assert.assertEquals(100L, Bytes.toLong(kvTable.read(a)));
+    Assert.assertEquals(200L, Bytes.toLong(kvTable.read(b)));
+
+    // pending increments are applied before a read
+    kvTable.increment(a, 5);
+    Assert.assertEquals(105L, Bytes.toLong(kvTable.read(a)));
+    Assert.assertEquals(110L, kvTable.incrementAndGet(a, 5));
+  }
+
+  @Test
+  public void testBulk() throws Exception {
+    DataSetManager<KeyValueTable> kvTableManager = getKVTableDataset("kvBulkTable");
+    RemoteKeyValueTable kvTable = (RemoteKeyValueTable) kvTableManager.get();
+
+    List<KeyValue<byte[], byte[]>> keyValues = new ArrayList<>();
+    Map<byte[], Long> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 500; i++) {
+      keyValues.add(new KeyValue<>(Bytes.toBytes("key" + i), Bytes.toBytes((long) i)));
+      increments.put(Bytes.toBytes("key" + i), 1L);
+    }
+    kvTable.writeAll(keyValues);
+    kvTable.incrementAll(increments);
+    kvTable.deleteAll(new byte[][] { Bytes.toBytes("key0"), Bytes.toBytes("key1") });
+
+    Assert.assertNull(kvTable.read("key0"));
+    Assert.assertNull(kvTable.read("key1"));
+    for (int i = 2; i < 500; i++) {
+      Assert.assertEquals(i + 1, Bytes.toLong(kvTable.read("key" + i)));
+    }
+
+    // buffered writes and increments of the same key are applied in order
+    kvTable.write("key0", Bytes.toBytes(10L));
+    kvTable.increment(Bytes.toBytes("key0"), 5);
+    kvTable.write(new KeyValue<>(Bytes.toBytes("key1"), Bytes.toBytes(20L)));
+    kvTableManager.flush();
+    Assert.assertEquals(15L, Bytes.toLong(kvTable.read("key0")));
+    Assert.assertEquals(20L, Bytes.toLong(kvTable.read("key1")));
+  }
+
+  @Test
+  public void testAgedFlush() throws Exception {
+    System.setProperty(RemoteKeyValueTable.BUFFER_AGE_MS, "100");
+    try {
+      // the table client is created with the buffer age that is currently configured
+      KeyValueTable kvTable = getKVTableDataset("kvAgedTable").get();
+      kvTable.write("k", "v");
+      kvTable.increment(Bytes.toBytes("counter"), 5);
+
+      // read through another client, since a read through the same one would send the buffer itself
+      AsyncRemoteKeyValueTable reader = getAsyncKVTableDataset("kvAgedTable");
+      TimeUnit.SECONDS.sleep(2);
+      Assert.assertArrayEquals("v".getBytes(), reader.read("k".getBytes()).get());
+      Assert.assertEquals(5L, Bytes.toLong(reader.read("counter".getBytes()).get()));
+    } finally {
+      System.clearProperty(RemoteKeyValueTable.BUFFER_AGE_MS);
+    }
+  }
+
+  @Test
+  public void testReadAll() throws Exception {
+    System.setProperty(RemoteKeyValueTable.READ_CHUNK_SIZE, "100");
+    try {
+      // the table client is created with the chunk size that is currently configured
+      DataSetManager<KeyValueTable> kvTableManager = getKVTableDataset("kvReadAllTable");
+      KeyValueTable kvTable = kvTableManager.get();
+
+      // large enough values that the service has to split the response of a chunk
+      byte[] value = new byte[64 * 1024];
+      byte[][] keys = new byte[300][];
+      for (int i = 0; i < 300; i++) {
+        keys[i] = Bytes.toBytes(i);
+        if (i % 2 == 0) {
+          kvTable.write(keys[i], value);
+        }
+        if (i % 50 == 0) {
+          kvTableManager.flush();
+        }
+      }
+
+      Map<byte[], byte[]> values = kvTable.readAll(keys);
+      Assert.assertEquals(150, values.size());
+      for (int i = 0; i < 300; i++) {
+        Assert.assertEquals(i % 2 == 0, values.get(keys[i]) != null);
+      }
+    } finally {
+      System.clearProperty(RemoteKeyValueTable.READ_CHUNK_SIZE);
+    }
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    DataSetManager<KeyValueTable> kvTableManager = getKVTableDataset("kvScanTable");
+    KeyValueTable kvTable = kvTableManager.get();
+
+    // more key/value pairs than fit in one page, so that the scan has to resume
+    for (int i = 0; i < 2500; i++) {
+      kvTable.write(Bytes.toBytes(i), Bytes.toBytes((long) i));
+    }
+
+    int expected = 0;
+    try (CloseableIterator<KeyValue<byte[], byte[]>> scanner = kvTable.scan(null, null)) {
+      while (scanner.hasNext()) {
+        KeyValue<byte[], byte[]> keyValue = scanner.next();
+        Assert.assertEquals(expected, Bytes.toInt(keyValue.getKey()));
+        Assert.assertEquals(expected, Bytes.toLong(keyValue.getValue()));
+        expected++;
+      }
+    }
+    Assert.assertEquals(2500, expected);
+
+    expected = 100;
+    try (CloseableIterator<KeyValue<byte[], byte[]>> scanner = kvTable.scan(Bytes.toBytes(100), Bytes.toBytes(200))) {
+      while (scanner.hasNext()) {
+        Assert.assertEquals(expected++, Bytes.toInt(scanner.next().getKey()));
+      }
+    }
+    Assert.assertEquals(200, expected);
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    AsyncRemoteKeyValueTable kvTable = getAsyncKVTableDataset("asyncKVTable");
+
+    byte[] key = "counter".getBytes();
+    List<CompletableFuture<Void>> increments = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      increments.add(kvTable.increment(key, 1));
+    }
+    CompletableFuture.allOf(increments.toArray(new CompletableFuture[increments.size()])).get();
+    Assert.assertEquals(200L, Bytes.toLong(kvTable.read(key).get()));
+
+    kvTable.write("k".getBytes(), "v".getBytes()).get();
+    Assert.assertArrayEquals("v".getBytes(), kvTable.read("k".getBytes()).get());
+    Assert.assertNull(kvTable.read("missing".getBytes()).get());
+  }
+
+  @Test
+  public void testSplits() throws Exception {
+    DataSetManager<KeyValueTable> kvTableManager = getKVTableDataset("kvSplitTable");
+    KeyValueTable kvTable = kvTableManager.get();
+
+    for (int i = 0; i < 1000; i++) {
+      kvTable.write(Bytes.toBytes(i), Bytes.toBytes((long) i));
+    }
+
+    final AtomicLong sum = new AtomicLong();
+    long keyValues = readSplitsInParallel(kvTable, (key, value) -> sum.addAndGet(Bytes.toLong(value)));
+    Assert.assertEquals(1000, keyValues);
+    Assert.assertEquals(999 * 1000 / 2, sum.get());
+  }
+
+  @Test
+  public void testSharedService() throws Exception {
+    System.setProperty(AudiTestBase.SHARED_DATASET_SERVICES, "true");
+    try {
+      // both tables are served by the same service, which is deployed once
+      KeyValueTable first = getKVTableDataset("kvSharedTable1").get();
+      KeyValueTable second = getKVTableDataset("kvSharedTable2").get();
+
+      first.write("k", "first");
+      second.write("k", "second");
+      Assert.assertArrayEquals(Bytes.toBytes("first"), first.read("k"));
+      Assert.assertArrayEquals(Bytes.toBytes("second"), second.read("k"));
+
+      // the dataset is served by the same running service when it is requested again
+      Assert.assertArrayEquals(Bytes.toBytes("first"), getKVTableDataset("kvSharedTable1").get().read("k"));
+    } finally {
+      System.clearProperty(AudiTestBase.SHARED_DATASET_SERVICES);
+    }
+  }
 }
@@ -16,15 +16,30 @@
 
 package io.cdap.cdap.remote.dataset.test;
 
+import com.google.common.base.Strings;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Put;
 import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import io.cdap.cdap.remote.dataset.table.AsyncRemoteTable;
+import io.cdap.cdap.remote.dataset.table.RemoteTable;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.DataSetManager;
+import org.apache.tephra.TransactionAware;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Tests {@link io.cdap.cdap.remote.dataset.table.RemoteTable}.
+ * Tests {@link RemoteTable}.
  */
 public class RemoteTableTest extends AudiTestBase {
 
@@ -49,4 +64,226 @@ public class RemoteTableTest extends AudiTestBase {
     row = table.get(a);
     Assert.assertTrue(row.isEmpty());
   }
+
+  @Test
+  public void testBufferedWrites() throws Exception {
+    DataSetManager<Table> tableManager = getTableDataset("bufferedTable");
+    Table table = tableManager.get();
+
+    byte[] col = Bytes.toBytes("col");
+    for (int i = 0; i < 2500; i++) {
+      table.put(Bytes.toBytes(i), col, Bytes.toBytes(i));
+    }
+    table.delete(Bytes.toBytes(0));
+    tableManager.flush();
+
+    Assert.assertTrue(table.get(Bytes.toBytes(0)).isEmpty());
+    for (int i = 1; i < 2500; i++) {
+      Assert.assertEquals(i, (int) table.get(Bytes.toBytes(i)).getInt(col));
+    }
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    DataSetManager<Table> tableManager = getTableDataset("scanTable");
+    Table table = tableManager.get();
+
+    // more rows than fit in one page, so that the scan has to resume
+    byte[] col = Bytes.toBytes("col");
+    for (int i = 0; i < 2500; i++) {
+      table.put(Bytes.toBytes(i), col, Bytes.toBytes(i));
+    }
+    tableManager.flush();
+
+    int expected = 0;
+    try (Scanner scanner = table.scan(null, null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        Assert.assertEquals(expected, Bytes.toInt(row.getRow()));
+        Assert.assertEquals(expected, (int) row.getInt(col));
+        expected++;
+      }
+    }
+    Assert.assertEquals(2500, expected);
+
+    expected = 100;
+    try (Scanner scanner = table.scan(Bytes.toBytes(100), Bytes.toBytes(200))) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        Assert.assertEquals(expected++, Bytes.toInt(row.getRow()));
+      }
+    }
+    Assert.assertEquals(200, expected);
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    byte[] col = Bytes.toBytes("col");
+    byte[] small = Bytes.toBytes("small");
+    byte[] large = Bytes.toBytes(Strings.repeat("large", 10000));
+    for (String compression : new String[] { "gzip", "snappy" }) {
+      System.setProperty(RemoteDatasetClient.COMPRESSION, compression);
+      try {
+        // the table client is created with the compression that is currently configured
+        Table table = getTableDataset(compression + "Table").get();
+        table.put(small, col, small);
+        table.put(large, col, large);
+        Assert.assertArrayEquals(small, table.get(small, col));
+        Assert.assertArrayEquals(large, table.get(large, col));
+
+        int rows = 0;
+        try (Scanner scanner = table.scan(null, null)) {
+          while (scanner.next() != null) {
+            rows++;
+          }
+        }
+        Assert.assertEquals(2, rows);
+      } finally {
+        System.clearProperty(RemoteDatasetClient.COMPRESSION);
+      }
+    }
+  }
+
+  @Test
+  public void testWideRow() throws Exception {
+    System.setProperty(RemoteTable.COLUMN_PAGE_SIZE, "100");
+    try {
+      // the table client is created with the column page size that is currently configured
+      DataSetManager<Table> tableManager = getTableDataset("wideRowTable");
+      Table table = tableManager.get();
+
+      byte[] row = Bytes.toBytes("row");
+      for (int i = 0; i < 1000; i++) {
+        table.put(row, Bytes.toBytes(i), Bytes.toBytes(i));
+      }
+      tableManager.flush();
+
+      Row wideRow = table.get(row, null, null, Integer.MAX_VALUE);
+      int expected = 0;
+      for (Map.Entry<byte[], byte[]> column : wideRow.getColumns().entrySet()) {
+        Assert.assertEquals(expected, Bytes.toInt(column.getKey()));
+        Assert.assertEquals(expected, Bytes.toInt(column.getValue()));
+        expected++;
+      }
+      Assert.assertEquals(1000, expected);
+      Assert.assertEquals(1000, wideRow.getColumns().size());
+      // one column of the first page, and one of a later page
+      Assert.assertEquals(50, (int) wideRow.getInt(Bytes.toBytes(50)));
+      Assert.assertEquals(500, (int) wideRow.getInt(Bytes.toBytes(500)));
+
+      Row limitedRow = table.get(row, Bytes.toBytes(100), Bytes.toBytes(900), 250);
+      Assert.assertEquals(250, limitedRow.getColumns().size());
+      Assert.assertNull(limitedRow.get(Bytes.toBytes(350)));
+      Assert.assertEquals(349, (int) limitedRow.getInt(Bytes.toBytes(349)));
+    } finally {
+      System.clearProperty(RemoteTable.COLUMN_PAGE_SIZE);
+    }
+  }
+
+  @Test
+  public void testIncrements() throws Exception {
+    DataSetManager<Table> tableManager = getTableDataset("incrementTable");
+    Table table = tableManager.get();
+
+    byte[] row = Bytes.toBytes("row");
+    byte[] col = Bytes.toBytes("col");
+    for (int i = 0; i < 100; i++) {
+      table.increment(row, col, 1);
+    }
+    tableManager.flush();
+    Assert.assertEquals(100L, (long) table.get(row).getLong(col));
+
+    // an increment buffered before a put of the same row must be applied before the put
+    table.increment(row, col, 1);
+    table.put(row, col, Bytes.toBytes(7L));
+    table.increment(row, col, 3);
+    Assert.assertEquals(10L, table.incrementAndGet(row, col, 0));
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    AsyncRemoteTable table = getAsyncTableDataset("asyncTable");
+    byte[] col = "col".getBytes();
+
+    List<CompletableFuture<Void>> puts = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      puts.add(table.put(new Put(Bytes.toBytes(i), col, Bytes.toBytes(i * 2))));
+    }
+    CompletableFuture.allOf(puts.toArray(new CompletableFuture[puts.size()])).get();
+
+    List<CompletableFuture<Row>> gets = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      gets.add(table.get(new Get(Bytes.toBytes(i))));
+    }
+    for (int i = 0; i < 500; i++) {
+      Assert.assertEquals(i * 2, Bytes.toInt(gets.get(i).get().get(col)));
+    }
+    Assert.assertTrue(table.compareAndSwap(Bytes.toBytes(0), col, Bytes.toBytes(0), Bytes.toBytes(1)).get());
+  }
+
+  @Test
+  public void testSplits() throws Exception {
+    DataSetManager<Table> tableManager = getTableDataset("splitTable");
+    Table table = tableManager.get();
+
+    byte[] col = "col".getBytes();
+    for (int i = 0; i < 1000; i++) {
+      table.put(Bytes.toBytes(i), col, Bytes.toBytes((long) i));
+    }
+    tableManager.flush();
+
+    final AtomicLong sum = new AtomicLong();
+    long rows = readSplitsInParallel(table, table.getSplits(4, null, null), 4,
+                                     (row, columns) -> sum.addAndGet(columns.getLong(col)));
+    Assert.assertEquals(1000, rows);
+    Assert.assertEquals(999 * 1000 / 2, sum.get());
+  }
+
+  @Test
+  public void testTransaction() throws Exception {
+    DataSetManager<Table> tableManager = getTableDataset("txTable");
+    Table table = tableManager.get();
+    TransactionAware txTable = (TransactionAware) table;
+
+    byte[] a = "a".getBytes();
+    byte[] b = "b".getBytes();
+    byte[] c = "c".getBytes();
+    byte[] col = "col".getBytes();
+    table.put(a, col, Bytes.toBytes(1L));
+    table.put(c, col, Bytes.toBytes(1L));
+    tableManager.flush();
+
+    // the remote Table does not use the transaction itself
+    txTable.startTx(null);
+    table.increment(a, col, 2L);
+    table.put(b, col, Bytes.toBytes(5L));
+    table.delete(c);
+    // reads see the changes of the transaction
+    Assert.assertEquals(3L, (long) table.get(a).getLong(col));
+    Assert.assertEquals(5L, (long) table.get(b).getLong(col));
+    Assert.assertTrue(table.get(c).isEmpty());
+    Assert.assertTrue(table.compareAndSwap(b, col, Bytes.toBytes(5L), Bytes.toBytes(6L)));
+    Assert.assertFalse(table.compareAndSwap(a, col, Bytes.toBytes(1L), Bytes.toBytes(0L)));
+    int rows = 0;
+    try (Scanner scanner = table.scan(null, null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        Assert.assertFalse(Bytes.equals(c, row.getRow()));
+        rows++;
+      }
+    }
+    Assert.assertEquals(2, rows);
+    Assert.assertTrue(txTable.commitTx());
+    txTable.postTxCommit();
+
+    Assert.assertEquals(3L, (long) table.get(a).getLong(col));
+    Assert.assertEquals(6L, (long) table.get(b).getLong(col));
+    Assert.assertTrue(table.get(c).isEmpty());
+
+    // changes of a rolled back transaction are never sent
+    txTable.startTx(null);
+    table.put(c, col, Bytes.toBytes(1L));
+    Assert.assertTrue(txTable.rollbackTx());
+    Assert.assertTrue(table.get(c).isEmpty());
+  }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link WaitScheduler}, its {@link WaitScheduler.Backoff}, and the waits of {@link Tasks} built on it.
+ */
+public class WaitSchedulerTest {
+
+  @Test
+  public void testBackoffGrowsUpToMaxDelay() {
+    WaitScheduler.Backoff backoff = new WaitScheduler.Backoff(10, 80, TimeUnit.MILLISECONDS, 0, false);
+    long[] expectedMillis = {10, 10, 20, 40, 80, 80, 80};
+    for (int attempts = 0; attempts < expectedMillis.length; attempts++) {
+      Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(expectedMillis[attempts]), backoff.getDelayNanos(attempts));
+    }
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(80), backoff.getDelayNanos(1000));
+  }
+
+  @Test
+  public void testFixedBackoff() {
+    WaitScheduler.Backoff backoff = WaitScheduler.Backoff.fixed(5, TimeUnit.SECONDS);
+    for (int attempts = 0; attempts < 10; attempts++) {
+      Assert.assertEquals(TimeUnit.SECONDS.toNanos(5), backoff.getDelayNanos(attempts));
+    }
+  }
+
+  @Test
+  public void testBackoffJitterBounds() {
+    WaitScheduler.Backoff backoff = new WaitScheduler.Backoff(100, 100, TimeUnit.MILLISECONDS, 0.5, false);
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < 1000; i++) {
+      long delay = backoff.getDelayNanos(1);
+      min = Math.min(min, delay);
+      max = Math.max(max, delay);
+    }
+    Assert.assertTrue("Delay below the jitter: " + min, min >= TimeUnit.MILLISECONDS.toNanos(50));
+    Assert.assertTrue("Delay above the jitter: " + max, max <= TimeUnit.MILLISECONDS.toNanos(150));
+    // the delays are spread, rather than all equal
+    Assert.assertTrue(max - min > TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBackoff() {
+    new WaitScheduler.Backoff(10, 5, TimeUnit.MILLISECONDS, 0, false);
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Integer> wait = WaitScheduler.get().waitFor(
+      "testTimeout", calls::incrementAndGet, value -> false, 200, TimeUnit.MILLISECONDS,
+      WaitScheduler.Backoff.fixed(20, TimeUnit.MILLISECONDS), value -> "last value " + value);
+    try {
+      wait.get(10, TimeUnit.SECONDS);
+      Assert.fail("Expected the wait to time out");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TimeoutException);
+      Assert.assertEquals("last value " + calls.get(), e.getCause().getMessage());
+    }
+    Assert.assertTrue(calls.get() > 1);
+  }
+
+  @Test
+  public void testExceptionPropagates() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Integer> wait = WaitScheduler.get().waitFor("testExceptionPropagates", () -> {
+      if (calls.incrementAndGet() == 3) {
+        throw new IOException("third call");
+      }
+      return calls.get();
+    }, value -> false, 10, TimeUnit.SECONDS, WaitScheduler.Backoff.fixed(10, TimeUnit.MILLISECONDS), null);
+    try {
+      wait.get(10, TimeUnit.SECONDS);
+      Assert.fail("Expected the wait to fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+      Assert.assertEquals("third call", e.getCause().getMessage());
+    }
+    // no probe follows the failure
+    TimeUnit.MILLISECONDS.sleep(100);
+    Assert.assertEquals(3, calls.get());
+  }
+
+  @Test
+  public void testCancelStopsProbing() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Integer> wait = WaitScheduler.get().waitFor(
+      "testCancelStopsProbing", calls::incrementAndGet, value -> false, 10, TimeUnit.SECONDS,
+      WaitScheduler.Backoff.fixed(10, TimeUnit.MILLISECONDS), null);
+    Tasks.waitFor(true, () -> calls.get() >= 3, 10, TimeUnit.SECONDS);
+    wait.cancel(true);
+    // a probe which was already scheduled may still run, but no further one
+    TimeUnit.MILLISECONDS.sleep(100);
+    int callsAfterCancel = calls.get();
+    TimeUnit.MILLISECONDS.sleep(100);
+    Assert.assertEquals(callsAfterCancel, calls.get());
+    Assert.assertTrue(wait.isCancelled());
+  }
+
+  @Test
+  public void testWaitForTimeoutAndFailure() throws Exception {
+    try {
+      Tasks.waitFor(true, () -> false, 100, TimeUnit.MILLISECONDS, 10, TimeUnit.MILLISECONDS);
+      Assert.fail("Expected the wait to time out");
+    } catch (TimeoutException e) {
+      Assert.assertEquals("Timeout occurred. Expected true but found false.", e.getMessage());
+    }
+    try {
+      Tasks.waitFor(true, () -> {
+        throw new IOException("failed");
+      }, 10, TimeUnit.SECONDS);
+      Assert.fail("Expected the wait to fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void testNestedWaitFor() throws Exception {
+    // a callable which waits itself runs the inner wait on its own thread, rather than on another one of the pool
+    Tasks.waitFor(true, () -> {
+      Tasks.waitFor(true, () -> true, 10, TimeUnit.SECONDS);
+      return true;
+    }, 10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testWaitForAllAtOnce() throws Exception {
+    // each condition is met on every other call, but only together on the third round
+    AtomicInteger first = new AtomicInteger();
+    AtomicInteger second = new AtomicInteger();
+    Map<String, Callable<Boolean>> callables = new LinkedHashMap<>();
+    callables.put("first", () -> first.incrementAndGet() % 2 == 1);
+    callables.put("second", () -> second.incrementAndGet() % 3 == 0);
+    Tasks.waitForAllAtOnce(true, callables, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(3, first.get());
+    Assert.assertEquals(3, second.get());
+  }
+
+  @Test
+  public void testWaitForAllAtOnceTimeout() throws Exception {
+    Map<String, Callable<Boolean>> callables = new LinkedHashMap<>();
+    callables.put("met", () -> true);
+    callables.put("unmet", () -> false);
+    try {
+      Tasks.waitForAllAtOnce(true, callables, 100, TimeUnit.MILLISECONDS, 10, TimeUnit.MILLISECONDS);
+      Assert.fail("Expected the wait to time out");
+    } catch (TimeoutException e) {
+      Assert.assertEquals("Timeout occurred. 1 of 2 conditions were not met at once: "
+                            + "[unmet: expected true but found false]", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testAllAtOnceValues() throws Exception {
+    List<Callable<Integer>> callables = Arrays.asList(() -> 1, () -> 2);
+    CompletableFuture<List<Integer>> wait = WaitScheduler.get().waitForAllAtOnce(
+      "testAllAtOnceValues", callables, value -> value > 0, 10, TimeUnit.SECONDS,
+      WaitScheduler.Backoff.fixed(10, TimeUnit.MILLISECONDS), null);
+    Assert.assertEquals(Arrays.asList(1, 2), wait.get(10, TimeUnit.SECONDS));
+  }
+}
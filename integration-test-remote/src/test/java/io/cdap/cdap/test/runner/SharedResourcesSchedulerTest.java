@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.Description;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Tests {@link SharedResourcesScheduler} with children which only record when they run.
+ */
+public class SharedResourcesSchedulerTest {
+
+  @AutoSuiteRunner.SharedResources("namespace1")
+  private static final class Namespace1 { }
+
+  @AutoSuiteRunner.SharedResources("namespace2")
+  private static final class Namespace2 { }
+
+  @AutoSuiteRunner.SharedResources({"namespace1", "namespace2"})
+  private static final class BothNamespaces { }
+
+  @AutoSuiteRunner.SharedResources(AutoSuiteRunner.SharedResources.ALL)
+  private static final class Disruptive { }
+
+  private static final class NotAnnotated { }
+
+  @AutoSuiteRunner.SharedResources({ })
+  private static final class Independent { }
+
+  @Test
+  public void testIndependentChildrenOverlap() {
+    Recorder recorder = new Recorder();
+    // both children only complete once they were running at the same time
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    recorder.add(Namespace1.class, bothStarted, bothStarted);
+    recorder.add(Namespace2.class, bothStarted, bothStarted);
+    recorder.run(2);
+    Assert.assertEquals(2, recorder.maxRunning);
+  }
+
+  @Test
+  public void testSharedResourceNeverOverlaps() {
+    Recorder recorder = new Recorder();
+    recorder.add(Namespace1.class, null, null);
+    recorder.add(BothNamespaces.class, null, null);
+    recorder.add(Namespace1.class, null, null);
+    recorder.run(3);
+    // each child waits for the previous one, with which it shares namespace1
+    Assert.assertEquals(1, recorder.maxRunning);
+    Assert.assertEquals(Recorder.names(Namespace1.class, BothNamespaces.class, Namespace1.class), recorder.started);
+  }
+
+  @Test
+  public void testWaitingChildIsOvertaken() {
+    Recorder recorder = new Recorder();
+    CountDownLatch overtaken = new CountDownLatch(1);
+    // the first child runs until the third one ran, which overtakes the second one waiting for namespace1
+    recorder.add(Namespace1.class, null, overtaken);
+    recorder.add(Namespace1.class, null, null);
+    recorder.add(Namespace2.class, overtaken, null);
+    recorder.run(2);
+    Assert.assertEquals(Recorder.names(Namespace1.class, Namespace2.class, Namespace1.class), recorder.started);
+  }
+
+  @Test
+  public void testRunAloneIsNotOvertaken() {
+    for (Class<?> alone : Recorder.classes(Disruptive.class, NotAnnotated.class)) {
+      Recorder recorder = new Recorder();
+      recorder.add(Namespace1.class, null, null);
+      recorder.add(alone, null, null);
+      recorder.add(Namespace2.class, null, null);
+      recorder.add(Independent.class, null, null);
+      recorder.run(4);
+      // the child which runs alone waits for the first child, and no later child starts before it
+      Assert.assertEquals(4, recorder.started.size());
+      Assert.assertEquals(Recorder.names(Namespace1.class, alone), recorder.started.subList(0, 2));
+      Assert.assertEquals(Collections.singletonList(1), recorder.runningWhenStarted.get(alone.getName()));
+      // the children after it don't share anything, so they run together
+      Assert.assertEquals(2, recorder.maxRunning);
+    }
+  }
+
+  @Test
+  public void testFailureIsRethrown() {
+    Recorder recorder = new Recorder();
+    recorder.add(Namespace1.class, null, null);
+    recorder.statements.add(() -> {
+      throw new IllegalStateException("failed child");
+    });
+    recorder.descriptions.add(Description.createSuiteDescription(Namespace2.class));
+    try {
+      recorder.run(2);
+      Assert.fail("Expected the failure of the child to be rethrown");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("failed child", e.getMessage());
+    }
+    // all children ran before the failure was rethrown
+    Assert.assertEquals(Recorder.names(Namespace1.class), recorder.started);
+  }
+
+  @Test
+  public void testThreadsStop() throws InterruptedException {
+    Recorder recorder = new Recorder();
+    recorder.add(Namespace1.class, null, null);
+    recorder.add(Namespace2.class, null, null);
+    recorder.run(2);
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (hasSuiteRunnerThread() && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assert.assertFalse(hasSuiteRunnerThread());
+  }
+
+  private static boolean hasSuiteRunnerThread() {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("suite-runner-") && thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Schedules children which record the order in which they start, and how many children are running at the same
+   * time.
+   */
+  private static final class Recorder {
+    private final List<Runnable> statements = new ArrayList<>();
+    private final List<Description> descriptions = new ArrayList<>();
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, List<Integer>> runningWhenStarted = new HashMap<>();
+    private int running;
+    private int maxRunning;
+
+    static List<String> names(Class<?>... classes) {
+      List<String> names = new ArrayList<>();
+      for (Class<?> clz : classes) {
+        names.add(clz.getName());
+      }
+      return names;
+    }
+
+    static List<Class<?>> classes(Class<?>... classes) {
+      List<Class<?>> list = new ArrayList<>();
+      Collections.addAll(list, classes);
+      return list;
+    }
+
+    /**
+     * Adds a child of the given class. Once started, it counts down a latch, if any, and then waits for another latch
+     * to reach zero, or for a short time if there is none.
+     */
+    void add(final Class<?> clz, @Nullable final CountDownLatch countDown, @Nullable final CountDownLatch await) {
+      descriptions.add(Description.createSuiteDescription(clz));
+      statements.add(() -> {
+        synchronized (this) {
+          started.add(clz.getName());
+          running++;
+          maxRunning = Math.max(maxRunning, running);
+          runningWhenStarted.computeIfAbsent(clz.getName(), name -> new ArrayList<>()).add(running);
+        }
+        try {
+          if (countDown != null) {
+            countDown.countDown();
+          }
+          if (await != null) {
+            Assert.assertTrue(await.await(10, TimeUnit.SECONDS));
+          } else {
+            TimeUnit.MILLISECONDS.sleep(50);
+          }
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        } finally {
+          synchronized (this) {
+            running--;
+          }
+        }
+      });
+    }
+
+    void run(int parallelism) {
+      SharedResourcesScheduler scheduler = new SharedResourcesScheduler(parallelism, () -> descriptions);
+      for (Runnable statement : statements) {
+        scheduler.schedule(statement);
+      }
+      scheduler.finished();
+    }
+  }
+}
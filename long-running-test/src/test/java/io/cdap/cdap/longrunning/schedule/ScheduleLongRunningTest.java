@@ -19,7 +19,6 @@ package io.cdap.cdap.longrunning.schedule;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.client.ScheduleClient;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.proto.id.ApplicationId;
 import io.cdap.cdap.proto.id.ScheduleId;
@@ -28,6 +27,7 @@ import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.LongRunningTestBase;
 import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.Tasks;
 import io.cdap.cdap.test.WorkflowManager;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
@@ -35,6 +35,8 @@ import org.junit.Assert;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
@@ -95,21 +97,16 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
     final ProgramClient workflowClient = new ProgramClient(getClientConfig(), getRestClient());
     final ApplicationId appId = getLongRunningNamespace().app(DataPartitionApp.NAME);
 
-    // Wait until no workflow is running
-    Tasks.waitFor(true, new Callable<Boolean>() {
-      @Override
-      public Boolean call() throws Exception {
-        for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
-          WorkflowId workflowId = appId.workflow(DataPartitionApp.WORKFLOW_PREFIX + i);
-          int activeRuns = workflowClient.getProgramRuns(workflowId, ProgramRunStatus.RUNNING.name(),
-                                                         state.getTriggerStartTimeSeconds(), Long.MAX_VALUE, 10).size();
-          if (activeRuns > 0) {
-            return false;
-          }
-        }
-        return true;
-      }
-    }, 60, TimeUnit.SECONDS, 1, TimeUnit.SECONDS);
+    Map<String, Callable<Integer>> activeRuns = new LinkedHashMap<>();
+    for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
+      final WorkflowId workflowId = appId.workflow(DataPartitionApp.WORKFLOW_PREFIX + i);
+      activeRuns.put(workflowId.getProgram(), () -> workflowClient.getProgramRuns(
+        workflowId, ProgramRunStatus.RUNNING.name(), state.getTriggerStartTimeSeconds(), Long.MAX_VALUE, 10).size());
+    }
+
+    // Wait until no workflow is running. Every check fetches the runs of all workflows concurrently,
+    // so that all of them are seen without running runs at about the same time.
+    Tasks.waitForAllAtOnce(0, activeRuns, 60, TimeUnit.SECONDS, 1, TimeUnit.SECONDS);
   }
 
   @Override
@@ -120,11 +117,16 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
     }
     ApplicationManager appManager = getApplicationManager(DataPartitionApp.NAME);
 
-    // Verify that every workflow is completed for once since triggers were fired in last run
+    // Verify that every workflow is completed for once since triggers were fired in last run,
+    // waiting for all workflows concurrently
+    Map<String, Callable<Integer>> completedRuns = new LinkedHashMap<>();
     for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
-      WorkflowManager workflowManager = appManager.getWorkflowManager(DataPartitionApp.WORKFLOW_PREFIX + i);
-      workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, state.getExpectedCompletedRunsNum(), 5, TimeUnit.MINUTES);
+      String workflowName = DataPartitionApp.WORKFLOW_PREFIX + i;
+      final WorkflowManager workflowManager = appManager.getWorkflowManager(workflowName);
+      completedRuns.put(workflowName, () -> workflowManager.getHistory(ProgramRunStatus.COMPLETED).size());
     }
+    // One deadline for all workflows, so that a stuck workflow fails the test after 5 minutes
+    Tasks.waitForAll(state.getExpectedCompletedRunsNum(), completedRuns, 5, TimeUnit.MINUTES, 1, TimeUnit.SECONDS);
     return state;
   }
 
@@ -47,11 +47,12 @@ public abstract class DatabaseTestBase extends ETLTestBase {
 
     StringBuilder metrics = new StringBuilder();
     List<String> metricsList = getMetricsClient().searchMetrics(tags);
+    Map<String, Long> values = getMetricValues(tags, metricsList);
 
     for (String metric : metricsList) {
       metrics.append(metric);
       metrics.append("=");
-      metrics.append(getMetricValue(tags, metric));
+      metrics.append(values.get(metric));
       metrics.append("\n");
     }
 
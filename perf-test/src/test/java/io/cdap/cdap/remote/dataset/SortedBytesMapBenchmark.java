@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a {@link TreeMap} with the {@link SortedBytesMap} when building and iterating over a map of 1M entries,
+ * in sorted order of the keys as the dataset services return them. Run {@link #main(String[])} to also report the
+ * bytes allocated by each benchmark, through the JMH GC profiler, and the heap retained by a map of each kind.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SortedBytesMapBenchmark {
+
+  @Param({"treeMap", "sortedBytesMap"})
+  public String mapType;
+
+  @Param({"1000000"})
+  public int entries;
+
+  @Param({"16"})
+  public int valueSize;
+
+  private byte[][] keys;
+  private byte[][] values;
+  private Map<byte[], byte[]> map;
+
+  @Setup
+  public void setup() {
+    keys = new byte[entries][];
+    values = new byte[entries][];
+    for (int i = 0; i < entries; i++) {
+      keys[i] = Bytes.toBytes("key" + String.format("%08d", i));
+      values[i] = new byte[valueSize];
+    }
+    map = build();
+  }
+
+  @Benchmark
+  public Map<byte[], byte[]> build() {
+    Map<byte[], byte[]> built = createMap(mapType, entries);
+    for (int i = 0; i < entries; i++) {
+      built.put(keys[i], values[i]);
+    }
+    if (built instanceof SortedBytesMap) {
+      ((SortedBytesMap) built).trimToSize();
+    }
+    return built;
+  }
+
+  @Benchmark
+  public long iterate() {
+    long bytes = 0;
+    for (Map.Entry<byte[], byte[]> entry : map.entrySet()) {
+      bytes += entry.getKey().length + entry.getValue().length;
+    }
+    return bytes;
+  }
+
+  private static Map<byte[], byte[]> createMap(String mapType, int entries) {
+    if ("treeMap".equals(mapType)) {
+      return new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    }
+    return new SortedBytesMap(entries);
+  }
+
+  /**
+   * @return the heap retained by a map of the given type with the given number of entries, in bytes
+   */
+  private static long measureRetainedHeap(String mapType, int entries) {
+    SortedBytesMapBenchmark benchmark = new SortedBytesMapBenchmark();
+    benchmark.mapType = mapType;
+    benchmark.entries = entries;
+    benchmark.valueSize = 16;
+    benchmark.setup();
+    // only the map should remain reachable
+    benchmark.keys = null;
+    benchmark.values = null;
+    long withMap = usedHeap();
+    benchmark.map = null;
+    return withMap - usedHeap();
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (String mapType : new String[] { "treeMap", "sortedBytesMap" }) {
+      System.out.printf("Heap retained by a %s of 1000000 entries: %d bytes%n",
+                        mapType, measureRetainedHeap(mapType, 1000000));
+    }
+    Options options = new OptionsBuilder()
+      .include(SortedBytesMapBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.remote.dataset.TreeMapInstanceCreator;
+import io.cdap.cdap.remote.dataset.table.TableFormats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Compares the throughput of the {@link JsonCodec} and the {@link BinaryCodec} when encoding and decoding the
+ * {@link Put}s and {@link Result}s exchanged with the Table service. Run {@link #main(String[])} to also report the
+ * allocation rate of each benchmark, through the JMH GC profiler.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CodecBenchmark {
+
+  private static final Gson GSON = new GsonBuilder()
+    .enableComplexMapKeySerialization()
+    .registerTypeAdapter(Map.class, new TreeMapInstanceCreator())
+    .create();
+
+  @Param({"json", "binary"})
+  public String codecName;
+
+  @Param({"10"})
+  public int columns;
+
+  @Param({"100"})
+  public int valueSize;
+
+  private Codec codec;
+  private Put put;
+  private Result result;
+  private byte[] encodedPut;
+  private byte[] encodedResult;
+
+  @Setup
+  public void setup() throws IOException {
+    codec = "json".equals(codecName) ? new JsonCodec(GSON) : TableFormats.createBinaryCodec();
+
+    Random random = new Random(0);
+    byte[] row = Bytes.toBytes("row-" + random.nextLong());
+    put = new Put(row);
+    Map<byte[], byte[]> rowColumns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < columns; i++) {
+      byte[] value = new byte[valueSize];
+      random.nextBytes(value);
+      put.add(Bytes.toBytes("column" + i), value);
+      rowColumns.put(Bytes.toBytes("column" + i), value);
+    }
+    result = new Result(row, rowColumns);
+
+    encodedPut = codec.encode(put, Put.class);
+    encodedResult = codec.encode(result, Result.class);
+  }
+
+  @Benchmark
+  public byte[] encodePut() throws IOException {
+    return codec.encode(put, Put.class);
+  }
+
+  @Benchmark
+  public Put decodePut() throws IOException {
+    return codec.decode(encodedPut, Put.class);
+  }
+
+  @Benchmark
+  public byte[] encodeResult() throws IOException {
+    return codec.encode(result, Result.class);
+  }
+
+  @Benchmark
+  public Result decodeResult() throws IOException {
+    return codec.decode(encodedResult, Result.class);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+      .include(CodecBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.table;
+
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Increment;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.client.util.RESTClient;
+import io.cdap.cdap.remote.dataset.RemoteDatasetClient;
+import io.cdap.cdap.remote.dataset.codec.JsonCodec;
+import io.cdap.cdap.test.AudiTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the throughput of the {@code namespaces/{namespace}/datasets/{dataset}/...} endpoints of the
+ * {@link AbstractTableHttpHandler} under concurrent load, cycling through get, put and incrementAndGet requests. As a
+ * baseline, it measures the same requests on the endpoints that operate on the dataset of the handler itself, which
+ * do not look up a dataset per request.
+ *
+ * The number of requests in flight and the duration of each measurement are set through the system properties
+ * {@code perf.table.concurrency} and {@code perf.table.duration.seconds}.
+ */
+public class NamespacedTableEndpointPerfTest extends AudiTestBase {
+  private static final Logger LOG = LoggerFactory.getLogger(NamespacedTableEndpointPerfTest.class);
+
+  private static final String DATASET = "namespacedPerfTable";
+  private static final int CONCURRENCY = Integer.getInteger("perf.table.concurrency", 16);
+  private static final long DURATION_SECONDS = Long.getLong("perf.table.duration.seconds", 60);
+  private static final long WARMUP_SECONDS = 10;
+  private static final int ROWS = 1000;
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+
+  @Test
+  public void test() throws Exception {
+    URL serviceURL = deployServiceForDataset(TEST_NAMESPACE, TableDatasetApp.class, DATASET);
+    // not the RESTClient of the test base, which logs every response
+    RESTClient restClient = new RESTClient(getClientConfig());
+    RemoteDatasetClient client = new RemoteDatasetClient(
+      serviceURL, restClient, getClientConfig(),
+      new JsonCodec(new GsonBuilder().enableComplexMapKeySerialization().create()),
+      TableFormats.createBinaryCodec(), CONCURRENCY);
+    String prefix = String.format("namespaces/%s/datasets/%s/", TEST_NAMESPACE.getNamespace(), DATASET);
+
+    run(client, prefix, WARMUP_SECONDS);
+    double namespaced = run(client, prefix, DURATION_SECONDS);
+    double baseline = run(client, "", DURATION_SECONDS);
+    LOG.info("Namespaced Table endpoints served {} requests/sec and the endpoints of the handler's own dataset {} "
+               + "requests/sec ({}%) with {} requests in flight",
+             String.format("%.1f", namespaced), String.format("%.1f", baseline),
+             String.format("%.1f", 100 * namespaced / baseline), CONCURRENCY);
+  }
+
+  /**
+   * Sends requests for the given number of seconds, keeping {@link #CONCURRENCY} requests in flight. The requests
+   * still in flight at the end are waited for and counted, so that none of them overlaps the next run.
+   *
+   * @return the number of requests that completed per second
+   */
+  private double run(RemoteDatasetClient client, String prefix, long seconds) throws Exception {
+    final AtomicLong completed = new AtomicLong();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final Semaphore inFlight = new Semaphore(CONCURRENCY);
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+    for (int i = 0; failure.get() == null && System.nanoTime() < deadline; i++) {
+      inFlight.acquire();
+      byte[] row = Bytes.toBytes(i % ROWS);
+      CompletableFuture<Void> request;
+      switch (i % 3) {
+        case 0:
+          request = client.executeAsync(prefix + "get", new Get(row, COLUMN), Get.class);
+          break;
+        case 1:
+          request = client.executeAsync(prefix + "put", new Put(row, COLUMN, Bytes.toBytes((long) i)), Put.class);
+          break;
+        default:
+          request = client.executeAsync(prefix + "incrementAndGet", new Increment(row, COLUMN, 1L), Increment.class);
+      }
+      request.whenComplete((result, t) -> {
+        record(completed, failure, t);
+        inFlight.release();
+      });
+    }
+    int outstanding = CONCURRENCY - inFlight.availablePermits();
+    inFlight.acquire(CONCURRENCY);
+    long elapsedNanos = System.nanoTime() - start;
+    Assert.assertNull("Request failed: " + failure.get(), failure.get());
+    LOG.debug("Completed {} requests in {} ms, {} of them after the deadline",
+              completed.get(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), outstanding);
+    return completed.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  private static void record(AtomicLong completed, AtomicReference<Throwable> failure, Throwable t) {
+    if (t == null) {
+      completed.incrementAndGet();
+    } else {
+      failure.compareAndSet(null, t);
+    }
+  }
+}